@@ -0,0 +1,184 @@
+package com.medical.dme.common.codec;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Écriture des types de base du format binaire : entiers en varint (zigzag pour
+ * les signés), chaînes UTF-8 précédées de leur longueur. Les valeurs nulles sont
+ * encodées par 0, les autres valeurs décalées de 1.
+ */
+public final class BinaryWriter {
+
+    private final ByteBufferPool pool;
+    private ByteBuffer buffer;
+
+    // Écriture dans un tampon du pool, agrandi au besoin
+    public BinaryWriter(ByteBufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire(pool.getBufferSize());
+    }
+
+    // Écriture dans un tampon fourni par l'appelant, de taille fixe
+    public BinaryWriter(ByteBuffer target) {
+        this.pool = null;
+        this.buffer = target;
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeVarLong(long value) {
+        // Taille exacte : un tampon fourni par l'appelant peut être juste assez grand
+        ensureCapacity(varLongSize(value));
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        int length = utf8Length(value);
+        writeVarInt(length + 1);
+        ensureCapacity(length);
+
+        // Encodage UTF-8 direct dans le tampon, sans tableau intermédiaire
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    public void writeStringList(List<String> values) {
+        if (values == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(values.size() + 1);
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    public void writeDate(LocalDate value) {
+        writeVarLong(value == null ? 0 : zigZag(value.toEpochDay()) + 1);
+    }
+
+    public void writeDateTime(LocalDateTime value) {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeZigZag(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarInt(value.getNano());
+        }
+    }
+
+    public void writeBytes(byte[] value) {
+        writeVarInt(value.length);
+        ensureCapacity(value.length);
+        buffer.put(value);
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.duplicate().flip().get(bytes);
+        return bytes;
+    }
+
+    // Rend le tampon au pool ; le writer ne doit plus être utilisé ensuite
+    public void release() {
+        if (pool != null && buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        if (pool == null) {
+            throw new java.nio.BufferOverflowException();
+        }
+
+        ByteBuffer larger = pool.acquire(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        larger.put(buffer);
+        pool.release(buffer);
+        buffer = larger;
+    }
+
+    // Octets nécessaires pour value en varint (7 bits utiles par octet)
+    static int varLongSize(long value) {
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,193 @@
+package com.medical.dme.common.codec;
+
+import com.medical.dme.common.model.Address;
+import com.medical.dme.common.model.Contact;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.model.Patient;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec binaire compact du modèle commun, alternative au XML JAXB.
+ * Format : [magic][version] puis les champs dans l'ordre de déclaration.
+ * Les énumérations sont encodées par leur rang dans un dictionnaire figé
+ * par version, indépendant de l'ordre de déclaration Java.
+ */
+public final class MedicalRecordBinaryCodec {
+
+    public static final int MAGIC = 0xD3;
+    public static final int FORMAT_VERSION = 1;
+
+    // Dictionnaire de la version 1 ; ne jamais réordonner, seulement ajouter
+    private static final Patient.Gender[] GENDERS_V1 = {
+            Patient.Gender.MALE, Patient.Gender.FEMALE, Patient.Gender.OTHER
+    };
+
+    private static final MedicalRecordBinaryCodec SHARED =
+            new MedicalRecordBinaryCodec(new ByteBufferPool(8 * 1024, 64));
+
+    private final ByteBufferPool pool;
+
+    public MedicalRecordBinaryCodec(ByteBufferPool pool) {
+        this.pool = pool;
+    }
+
+    public static MedicalRecordBinaryCodec shared() {
+        return SHARED;
+    }
+
+    public byte[] encode(MedicalRecord record) {
+        BinaryWriter writer = new BinaryWriter(pool);
+        try {
+            writeRecord(writer, record);
+            return writer.toByteArray();
+        } finally {
+            writer.release();
+        }
+    }
+
+    // Encode dans le tampon fourni ; BufferOverflowException s'il est trop petit
+    public int encode(MedicalRecord record, ByteBuffer target) {
+        int start = target.position();
+        writeRecord(new BinaryWriter(target), record);
+        return target.position() - start;
+    }
+
+    public MedicalRecord decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    public MedicalRecord decode(ByteBuffer source) {
+        BinaryReader reader = new BinaryReader(source);
+
+        int magic = reader.readByte();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException("Not a binary medical record (magic " + magic + ")");
+        }
+
+        int version = reader.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary record version: " + version);
+        }
+        return readRecord(reader);
+    }
+
+    public static boolean isBinaryRecord(ByteBuffer source) {
+        return source.remaining() >= 2 && (source.get(source.position()) & 0xFF) == MAGIC;
+    }
+
+    private void writeRecord(BinaryWriter writer, MedicalRecord record) {
+        writer.writeByte(MAGIC);
+        writer.writeByte(FORMAT_VERSION);
+
+        writer.writeString(record.getRecordId());
+        writer.writeDateTime(record.getCreationDate());
+        writePatient(writer, record.getPatient());
+        writer.writeStringList(record.getConsultations());
+        writer.writeStringList(record.getPrescriptions());
+    }
+
+    private MedicalRecord readRecord(BinaryReader reader) {
+        MedicalRecord record = new MedicalRecord();
+        record.setRecordId(reader.readString());
+        record.setCreationDate(reader.readDateTime());
+        record.setPatient(readPatient(reader));
+        record.setConsultations(reader.readStringList());
+        record.setPrescriptions(reader.readStringList());
+        return record;
+    }
+
+    private void writePatient(BinaryWriter writer, Patient patient) {
+        writer.writeBoolean(patient != null);
+        if (patient == null) {
+            return;
+        }
+        writer.writeString(patient.getPatientId());
+        writer.writeString(patient.getFirstName());
+        writer.writeString(patient.getLastName());
+        writer.writeDate(patient.getDateOfBirth());
+        writer.writeVarInt(genderCode(patient.getGender()));
+        writeContact(writer, patient.getContact());
+    }
+
+    private Patient readPatient(BinaryReader reader) {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        Patient patient = new Patient();
+        patient.setPatientId(reader.readString());
+        patient.setFirstName(reader.readString());
+        patient.setLastName(reader.readString());
+        patient.setDateOfBirth(reader.readDate());
+        patient.setGender(gender(reader.readVarInt()));
+        patient.setContact(readContact(reader));
+        return patient;
+    }
+
+    private void writeContact(BinaryWriter writer, Contact contact) {
+        writer.writeBoolean(contact != null);
+        if (contact == null) {
+            return;
+        }
+        writer.writeString(contact.getEmail());
+        writer.writeString(contact.getPhone());
+        writeAddress(writer, contact.getAddress());
+    }
+
+    private Contact readContact(BinaryReader reader) {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        Contact contact = new Contact();
+        contact.setEmail(reader.readString());
+        contact.setPhone(reader.readString());
+        contact.setAddress(readAddress(reader));
+        return contact;
+    }
+
+    private void writeAddress(BinaryWriter writer, Address address) {
+        writer.writeBoolean(address != null);
+        if (address == null) {
+            return;
+        }
+        writer.writeString(address.getStreet());
+        writer.writeString(address.getCity());
+        writer.writeString(address.getPostalCode());
+        writer.writeString(address.getCountry());
+    }
+
+    private Address readAddress(BinaryReader reader) {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        Address address = new Address();
+        address.setStreet(reader.readString());
+        address.setCity(reader.readString());
+        address.setPostalCode(reader.readString());
+        address.setCountry(reader.readString());
+        return address;
+    }
+
+    // Code du dictionnaire, partagé avec les autres formats binaires (deltas)
+    public static int genderCode(Patient.Gender gender) {
+        if (gender == null) {
+            return 0;
+        }
+        for (int i = 0; i < GENDERS_V1.length; i++) {
+            if (GENDERS_V1[i] == gender) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Gender not in binary dictionary: " + gender);
+    }
+
+    public static Patient.Gender gender(int code) {
+        if (code == 0) {
+            return null;
+        }
+        if (code > GENDERS_V1.length) {
+            throw new IllegalArgumentException("Unknown gender code: " + code);
+        }
+        return GENDERS_V1[code - 1];
+    }
+}
@@ -0,0 +1,168 @@
+package com.medical.dme.common.diff;
+
+import com.medical.dme.common.codec.BinaryReader;
+import com.medical.dme.common.codec.BinaryWriter;
+import com.medical.dme.common.codec.ByteBufferPool;
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.Patient;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Différence entre deux versions d'un dossier, calculée par {@link MedicalRecordDiff}.
+ * L'empreinte de la version de base permet de refuser un delta appliqué
+ * sur une autre version que celle d'origine.
+ */
+public final class MedicalRecordDelta {
+
+    private static final int MAGIC = 0xDE;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int KIND_SET = 0;
+    private static final int KIND_LIST_REPLACE = 1;
+    private static final int KIND_LIST_RANGE = 2;
+
+    private static final ByteBufferPool POOL = new ByteBufferPool(1024, 64);
+
+    private final long baseFingerprint;
+    private final long targetFingerprint;
+    private final List<Change> changes;
+
+    MedicalRecordDelta(long baseFingerprint, long targetFingerprint, List<Change> changes) {
+        this.baseFingerprint = baseFingerprint;
+        this.targetFingerprint = targetFingerprint;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public long getBaseFingerprint() {
+        return baseFingerprint;
+    }
+
+    public long getTargetFingerprint() {
+        return targetFingerprint;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public byte[] encode() {
+        BinaryWriter writer = new BinaryWriter(POOL);
+        try {
+            writer.writeByte(MAGIC);
+            writer.writeByte(FORMAT_VERSION);
+            writer.writeVarLong(baseFingerprint);
+            writer.writeVarLong(targetFingerprint);
+            writer.writeVarInt(changes.size());
+            for (Change change : changes) {
+                writeChange(writer, change);
+            }
+            return writer.toByteArray();
+        } finally {
+            writer.release();
+        }
+    }
+
+    public static MedicalRecordDelta decode(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(ByteBuffer.wrap(bytes));
+        if (reader.readByte() != MAGIC) {
+            throw new IllegalArgumentException("Not a medical record delta");
+        }
+        int version = reader.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported delta version: " + version);
+        }
+
+        long baseFingerprint = reader.readVarLong();
+        long targetFingerprint = reader.readVarLong();
+        int count = reader.readVarInt();
+        List<Change> changes = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            changes.add(readChange(reader));
+        }
+        return new MedicalRecordDelta(baseFingerprint, targetFingerprint, changes);
+    }
+
+    private static void writeChange(BinaryWriter writer, Change change) {
+        RecordField field = change.field();
+        writer.writeVarInt(field.code());
+
+        if (field.type() == RecordField.ValueType.LIST) {
+            if (change.removeCount() < 0) {
+                writer.writeByte(KIND_LIST_REPLACE);
+                writer.writeStringList(change.inserted());
+            } else {
+                writer.writeByte(KIND_LIST_RANGE);
+                writer.writeVarInt(change.from());
+                writer.writeVarInt(change.removeCount());
+                writer.writeStringList(change.inserted());
+            }
+            return;
+        }
+
+        writer.writeByte(KIND_SET);
+        Object value = change.value();
+        switch (field.type()) {
+            case STRING -> writer.writeString((String) value);
+            case DATE -> writer.writeDate((LocalDate) value);
+            case DATE_TIME -> writer.writeDateTime((LocalDateTime) value);
+            case GENDER -> writer.writeVarInt(MedicalRecordBinaryCodec.genderCode((Patient.Gender) value));
+            case PRESENCE -> writer.writeBoolean((Boolean) value);
+            default -> throw new IllegalStateException("Unexpected field type: " + field.type());
+        }
+    }
+
+    private static Change readChange(BinaryReader reader) {
+        RecordField field = RecordField.fromCode(reader.readVarInt());
+        int kind = reader.readByte();
+
+        switch (kind) {
+            case KIND_LIST_REPLACE:
+                return Change.replaceList(field, reader.readStringList());
+            case KIND_LIST_RANGE:
+                int from = reader.readVarInt();
+                int removeCount = reader.readVarInt();
+                return Change.replaceRange(field, from, removeCount, reader.readStringList());
+            case KIND_SET:
+                Object value = switch (field.type()) {
+                    case STRING -> reader.readString();
+                    case DATE -> reader.readDate();
+                    case DATE_TIME -> reader.readDateTime();
+                    case GENDER -> MedicalRecordBinaryCodec.gender(reader.readVarInt());
+                    case PRESENCE -> reader.readBoolean();
+                    default -> throw new IllegalArgumentException("Field " + field + " cannot be set");
+                };
+                return Change.set(field, value);
+            default:
+                throw new IllegalArgumentException("Unknown change kind: " + kind);
+        }
+    }
+
+    /**
+     * Une modification : affectation d'un champ, remplacement complet d'une liste
+     * (removeCount = -1) ou remplacement de la plage [from, from + removeCount).
+     */
+    public record Change(RecordField field, Object value, int from, int removeCount, List<String> inserted) {
+
+        static Change set(RecordField field, Object value) {
+            return new Change(field, value, 0, 0, null);
+        }
+
+        static Change replaceList(RecordField field, List<String> values) {
+            return new Change(field, null, 0, -1, values);
+        }
+
+        static Change replaceRange(RecordField field, int from, int removeCount, List<String> inserted) {
+            return new Change(field, null, from, removeCount, inserted);
+        }
+    }
+}
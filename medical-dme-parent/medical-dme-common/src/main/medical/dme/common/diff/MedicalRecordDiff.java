@@ -0,0 +1,130 @@
+package com.medical.dme.common.diff;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Calcul et application de deltas entre deux versions d'un dossier.
+ * Les listes sont comparées par préfixe et suffixe communs : l'ajout d'une
+ * consultation produit une seule modification ne contenant que le nouvel élément.
+ */
+public final class MedicalRecordDiff {
+
+    private MedicalRecordDiff() {
+    }
+
+    public static MedicalRecordDelta diff(MedicalRecord previous, MedicalRecord current) {
+        List<MedicalRecordDelta.Change> changes = new ArrayList<>();
+
+        // L'ordre des champs garantit qu'un objet parent est créé avant ses champs
+        for (RecordField field : RecordField.values()) {
+            Object before = field.get(previous);
+            Object after = field.get(current);
+
+            switch (field.type()) {
+                case PRESENCE -> {
+                    if ((before == null) != (after == null)) {
+                        changes.add(MedicalRecordDelta.Change.set(field, after != null));
+                    }
+                }
+                case LIST -> diffList(field, castList(before), castList(after), changes);
+                default -> {
+                    if (!Objects.equals(before, after)) {
+                        changes.add(MedicalRecordDelta.Change.set(field, after));
+                    }
+                }
+            }
+        }
+
+        return new MedicalRecordDelta(fingerprint(previous), fingerprint(current), changes);
+    }
+
+    // Renvoie une nouvelle version ; le dossier de base n'est pas modifié
+    public static MedicalRecord apply(MedicalRecord base, MedicalRecordDelta delta) {
+        if (fingerprint(base) != delta.getBaseFingerprint()) {
+            throw new IllegalStateException("Delta does not apply to this version of record " +
+                    base.getRecordId());
+        }
+
+        MedicalRecordBinaryCodec codec = MedicalRecordBinaryCodec.shared();
+        MedicalRecord result = codec.decode(codec.encode(base));
+
+        for (MedicalRecordDelta.Change change : delta.getChanges()) {
+            RecordField field = change.field();
+            if (clears(change) && field.get(result) == null) {
+                // Déjà absent, souvent parce que l'objet parent a été retiré :
+                // ne pas le recréer pour y écrire null
+                continue;
+            }
+            if (field.type() != RecordField.ValueType.LIST) {
+                field.set(result, change.value());
+            } else if (change.removeCount() < 0) {
+                field.set(result, change.inserted() == null ? null : new ArrayList<>(change.inserted()));
+            } else {
+                List<String> values = new ArrayList<>(castList(field.get(result)));
+                values.subList(change.from(), change.from() + change.removeCount()).clear();
+                values.addAll(change.from(), change.inserted());
+                field.set(result, values);
+            }
+        }
+
+        if (fingerprint(result) != delta.getTargetFingerprint()) {
+            throw new IllegalStateException("Delta application produced an unexpected version of record " +
+                    base.getRecordId());
+        }
+        return result;
+    }
+
+    private static boolean clears(MedicalRecordDelta.Change change) {
+        return switch (change.field().type()) {
+            case PRESENCE -> Boolean.FALSE.equals(change.value());
+            case LIST -> change.removeCount() < 0 && change.inserted() == null;
+            default -> change.value() == null;
+        };
+    }
+
+    public static long fingerprint(MedicalRecord record) {
+        CRC32 crc = new CRC32();
+        crc.update(MedicalRecordBinaryCodec.shared().encode(record));
+        return crc.getValue();
+    }
+
+    private static void diffList(RecordField field, List<String> before, List<String> after,
+                                 List<MedicalRecordDelta.Change> changes) {
+        if (before == null || after == null) {
+            if (before != after) {
+                changes.add(MedicalRecordDelta.Change.replaceList(field, after));
+            }
+            return;
+        }
+
+        int prefix = 0;
+        int maxPrefix = Math.min(before.size(), after.size());
+        while (prefix < maxPrefix && Objects.equals(before.get(prefix), after.get(prefix))) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && Objects.equals(before.get(before.size() - 1 - suffix),
+                after.get(after.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        int removeCount = before.size() - prefix - suffix;
+        List<String> inserted = new ArrayList<>(after.subList(prefix, after.size() - suffix));
+        if (removeCount > 0 || !inserted.isEmpty()) {
+            changes.add(MedicalRecordDelta.Change.replaceRange(field, prefix, removeCount, inserted));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castList(Object value) {
+        return (List<String>) value;
+    }
+}
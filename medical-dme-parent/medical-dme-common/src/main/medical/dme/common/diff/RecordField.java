@@ -0,0 +1,145 @@
+package com.medical.dme.common.diff;
+
+import com.medical.dme.common.model.Address;
+import com.medical.dme.common.model.Contact;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.model.Patient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Champs du modèle commun suivis par les deltas. Le code numérique fait partie
+ * du format binaire : ne jamais le réutiliser pour un autre champ.
+ */
+public enum RecordField {
+
+    RECORD_ID(1, ValueType.STRING, MedicalRecord::getRecordId,
+            (r, v) -> r.setRecordId((String) v)),
+    CREATION_DATE(2, ValueType.DATE_TIME, MedicalRecord::getCreationDate,
+            (r, v) -> r.setCreationDate((LocalDateTime) v)),
+
+    PATIENT(10, ValueType.PRESENCE, MedicalRecord::getPatient,
+            (r, v) -> r.setPatient((Boolean) v ? new Patient() : null)),
+    PATIENT_ID(11, ValueType.STRING, r -> patient(r, Patient::getPatientId),
+            (r, v) -> patientOf(r).setPatientId((String) v)),
+    FIRST_NAME(12, ValueType.STRING, r -> patient(r, Patient::getFirstName),
+            (r, v) -> patientOf(r).setFirstName((String) v)),
+    LAST_NAME(13, ValueType.STRING, r -> patient(r, Patient::getLastName),
+            (r, v) -> patientOf(r).setLastName((String) v)),
+    DATE_OF_BIRTH(14, ValueType.DATE, r -> patient(r, Patient::getDateOfBirth),
+            (r, v) -> patientOf(r).setDateOfBirth((LocalDate) v)),
+    GENDER(15, ValueType.GENDER, r -> patient(r, Patient::getGender),
+            (r, v) -> patientOf(r).setGender((Patient.Gender) v)),
+
+    CONTACT(20, ValueType.PRESENCE, r -> patient(r, Patient::getContact),
+            (r, v) -> patientOf(r).setContact((Boolean) v ? new Contact() : null)),
+    EMAIL(21, ValueType.STRING, r -> contact(r, Contact::getEmail),
+            (r, v) -> contactOf(r).setEmail((String) v)),
+    PHONE(22, ValueType.STRING, r -> contact(r, Contact::getPhone),
+            (r, v) -> contactOf(r).setPhone((String) v)),
+
+    ADDRESS(30, ValueType.PRESENCE, r -> contact(r, Contact::getAddress),
+            (r, v) -> contactOf(r).setAddress((Boolean) v ? new Address() : null)),
+    STREET(31, ValueType.STRING, r -> address(r, Address::getStreet),
+            (r, v) -> addressOf(r).setStreet((String) v)),
+    CITY(32, ValueType.STRING, r -> address(r, Address::getCity),
+            (r, v) -> addressOf(r).setCity((String) v)),
+    POSTAL_CODE(33, ValueType.STRING, r -> address(r, Address::getPostalCode),
+            (r, v) -> addressOf(r).setPostalCode((String) v)),
+    COUNTRY(34, ValueType.STRING, r -> address(r, Address::getCountry),
+            (r, v) -> addressOf(r).setCountry((String) v)),
+
+    CONSULTATIONS(40, ValueType.LIST, MedicalRecord::getConsultations,
+            (r, v) -> r.setConsultations(castList(v))),
+    PRESCRIPTIONS(41, ValueType.LIST, MedicalRecord::getPrescriptions,
+            (r, v) -> r.setPrescriptions(castList(v)));
+
+    enum ValueType {
+        STRING, DATE, DATE_TIME, GENDER, PRESENCE, LIST
+    }
+
+    private final int code;
+    private final ValueType type;
+    private final Function<MedicalRecord, Object> getter;
+    private final BiConsumer<MedicalRecord, Object> setter;
+
+    RecordField(int code, ValueType type, Function<MedicalRecord, ?> getter,
+                BiConsumer<MedicalRecord, Object> setter) {
+        this.code = code;
+        this.type = type;
+        this.getter = getter::apply;
+        this.setter = setter;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    ValueType type() {
+        return type;
+    }
+
+    Object get(MedicalRecord record) {
+        return getter.apply(record);
+    }
+
+    void set(MedicalRecord record, Object value) {
+        setter.accept(record, value);
+    }
+
+    static RecordField fromCode(int code) {
+        for (RecordField field : values()) {
+            if (field.code == code) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown record field code: " + code);
+    }
+
+    private static <T> T patient(MedicalRecord record, Function<Patient, T> getter) {
+        return record.getPatient() == null ? null : getter.apply(record.getPatient());
+    }
+
+    private static <T> T contact(MedicalRecord record, Function<Contact, T> getter) {
+        Contact contact = patient(record, Patient::getContact);
+        return contact == null ? null : getter.apply(contact);
+    }
+
+    private static <T> T address(MedicalRecord record, Function<Address, T> getter) {
+        Address address = contact(record, Contact::getAddress);
+        return address == null ? null : getter.apply(address);
+    }
+
+    // Les objets parents sont créés à la demande lors de l'application d'un delta
+    private static Patient patientOf(MedicalRecord record) {
+        if (record.getPatient() == null) {
+            record.setPatient(new Patient());
+        }
+        return record.getPatient();
+    }
+
+    private static Contact contactOf(MedicalRecord record) {
+        Patient patient = patientOf(record);
+        if (patient.getContact() == null) {
+            patient.setContact(new Contact());
+        }
+        return patient.getContact();
+    }
+
+    private static Address addressOf(MedicalRecord record) {
+        Contact contact = contactOf(record);
+        if (contact.getAddress() == null) {
+            contact.setAddress(new Address());
+        }
+        return contact.getAddress();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castList(Object value) {
+        return (List<String>) value;
+    }
+}
@@ -7,11 +7,16 @@ import jakarta.xml.bind.annotation.XmlRootElement;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.Serializable;
+
 @Data
 @NoArgsConstructor
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Address {
+public class Address implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     @XmlElement
     private String street;
 
@@ -1,4 +1,4 @@
-apackage com.medical.dme.common.model;
+package com.medical.dme.common.model;
 
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
@@ -7,11 +7,16 @@ import jakarta.xml.bind.annotation.XmlRootElement;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.Serializable;
+
 @Data
 @NoArgsConstructor
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Contact {
+public class Contact implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     @XmlElement
     private String email;
 
@@ -3,6 +3,7 @@ package com.medical.dme.common.model;
 import jakarta.xml.bind.annotation.*;
 import lombok.*;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -11,7 +12,10 @@ import java.util.List;
 @AllArgsConstructor
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
-public class MedicalRecord {
+public class MedicalRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     @XmlAttribute
     private String recordId;
 
@@ -3,6 +3,7 @@ package com.medical.dme.common.model;
 import jakarta.xml.bind.annotation.*;
 import lombok.*;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 
 @Data
@@ -10,7 +11,10 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Patient {
+public class Patient implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     @XmlElement
     private String patientId;
 
@@ -0,0 +1,87 @@
+package com.medical.dme.common.xml;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+public class BatchValidationReport {
+
+    private final Path directory;
+    private final List<FileResult> results;
+    private final long elapsedNanos;
+
+    BatchValidationReport(Path directory, Collection<FileResult> results, long elapsedNanos) {
+        this.directory = directory;
+        this.results = new ArrayList<>(results);
+        this.results.sort(Comparator.comparing(r -> r.file().getFileName().toString()));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<FileResult> getResults() {
+        return results;
+    }
+
+    public long getValidFiles() {
+        return results.stream().filter(FileResult::isValid).count();
+    }
+
+    public long getInvalidFiles() {
+        return results.size() - getValidFiles();
+    }
+
+    public long getTotalBytes() {
+        return results.stream().mapToLong(FileResult::bytes).sum();
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1_000_000_000.0;
+    }
+
+    public String summary() {
+        double seconds = getElapsedSeconds();
+        double megabytes = getTotalBytes() / (1024.0 * 1024.0);
+        return String.format("Files: %d, Valid: %d, Invalid: %d, Size: %.1f MB, Elapsed: %.2fs, Throughput: %.1f MB/s",
+                results.size(), getValidFiles(), getInvalidFiles(), megabytes, seconds,
+                seconds > 0 ? megabytes / seconds : 0);
+    }
+
+    public void writeTo(Path reportFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write("Validation report for " + directory.toAbsolutePath());
+            writer.newLine();
+            writer.write(summary());
+            writer.newLine();
+            writer.newLine();
+
+            for (FileResult result : results) {
+                writer.write((result.isValid() ? "VALID   " : "INVALID ") + result.file().getFileName()
+                        + " (records: " + result.validRecords() + " valid, "
+                        + result.invalidRecords() + " invalid)");
+                writer.newLine();
+
+                if (result.fatalError() != null) {
+                    writer.write("    fatal: " + result.fatalError());
+                    writer.newLine();
+                }
+                for (String error : result.errors()) {
+                    writer.write("    " + error);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    public record FileResult(Path file, long bytes, long validRecords, long invalidRecords,
+                             List<String> errors, String fatalError) {
+
+        public boolean isValid() {
+            return fatalError == null && invalidRecords == 0 && validRecords > 0;
+        }
+    }
+}
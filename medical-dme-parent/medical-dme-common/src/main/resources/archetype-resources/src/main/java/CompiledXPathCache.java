@@ -0,0 +1,82 @@
+package com.medical.dme.common.xml;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// XPathExpression et DocumentBuilder ne sont pas thread-safe : un cache par thread
+final class CompiledXPathCache {
+
+    // Les rapports utilisent quelques dizaines d'expressions, on garde une marge
+    private static final int MAX_EXPRESSIONS_PER_THREAD = 256;
+
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+    private static final DocumentBuilderFactory DOCUMENT_FACTORY = createDocumentFactory();
+
+    private static final ThreadLocal<XPath> XPATHS = ThreadLocal.withInitial(() -> {
+        synchronized (XPATH_FACTORY) {
+            return XPATH_FACTORY.newXPath();
+        }
+    });
+
+    private static final ThreadLocal<Map<String, XPathExpression>> EXPRESSIONS =
+            ThreadLocal.withInitial(() -> new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > MAX_EXPRESSIONS_PER_THREAD;
+                }
+            });
+
+    private static final ThreadLocal<DocumentBuilder> BUILDERS = ThreadLocal.withInitial(() -> {
+        try {
+            return DOCUMENT_FACTORY.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create DOM parser", e);
+        }
+    });
+
+    private CompiledXPathCache() {
+    }
+
+    static XPathExpression compile(String expression) throws XPathExpressionException {
+        Map<String, XPathExpression> expressions = EXPRESSIONS.get();
+        XPathExpression compiled = expressions.get(expression);
+        if (compiled == null) {
+            compiled = XPATHS.get().compile(expression);
+            expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    static Document parse(String xmlContent) throws Exception {
+        DocumentBuilder builder = BUILDERS.get();
+        try {
+            return builder.parse(new InputSource(new StringReader(xmlContent)));
+        } finally {
+            builder.reset();
+        }
+    }
+
+    private static DocumentBuilderFactory createDocumentFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to configure DOM parser", e);
+        }
+        return factory;
+    }
+}
@@ -0,0 +1,99 @@
+package com.medical.dme.common.xml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Validation en parallèle d'un répertoire de dossiers XML déposés par les partenaires.
+ * Les fichiers sont lus en flux (un dossier à la fois) et validés contre le schéma
+ * compilé partagé, sur un pool work-stealing dimensionné au nombre de cœurs.
+ * Le nombre de fichiers en cours est borné pour ne pas saturer la mémoire.
+ */
+public class MedicalRecordBatchValidator {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final int parallelism;
+    private final int maxInFlight;
+
+    public MedicalRecordBatchValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MedicalRecordBatchValidator(int parallelism) {
+        this.parallelism = parallelism;
+        this.maxInFlight = parallelism * 4;
+    }
+
+    public BatchValidationReport validateDirectory(Path directory) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Queue<BatchValidationReport.FileResult> results = new ConcurrentLinkedQueue<>();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.xml")) {
+            for (Path file : files) {
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        results.add(validateFile(file));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            // Attendre la fin de toutes les tâches en reprenant tous les permis
+            inFlight.acquire(maxInFlight);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new BatchValidationReport(directory, results, System.nanoTime() - start);
+    }
+
+    private BatchValidationReport.FileResult validateFile(Path file) {
+        long size = 0;
+        try {
+            size = Files.size(file);
+            try (MedicalRecordStreamReader reader = new MedicalRecordStreamReader(
+                    new BufferedInputStream(Files.newInputStream(file), READ_BUFFER_SIZE))) {
+                // Unmarshalling complet de chaque dossier, validé contre le XSD
+                MedicalRecordImportStats stats = reader.forEach(record -> { });
+                return new BatchValidationReport.FileResult(file, size, stats.getImported(),
+                        stats.getRejected(), stats.getErrors(), null);
+            }
+        } catch (Exception e) {
+            // Document mal formé : le fichier entier est rejeté
+            return new BatchValidationReport.FileResult(file, size, 0, 0,
+                    Collections.emptyList(), String.valueOf(e.getMessage()));
+        }
+    }
+
+    // Usage : MedicalRecordBatchValidator <répertoire> [rapport]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: MedicalRecordBatchValidator <directory> [report-file]");
+            System.exit(2);
+        }
+
+        Path directory = Paths.get(args[0]);
+        Path reportFile = args.length > 1 ? Paths.get(args[1]) : directory.resolve("validation-report.txt");
+
+        BatchValidationReport report = new MedicalRecordBatchValidator().validateDirectory(directory);
+        report.writeTo(reportFile);
+
+        System.out.println(report.summary());
+        System.out.println("Report written to " + reportFile);
+        System.exit(report.getInvalidFiles() == 0 ? 0 : 1);
+    }
+}
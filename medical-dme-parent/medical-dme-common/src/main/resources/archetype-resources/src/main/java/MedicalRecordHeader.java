@@ -0,0 +1,73 @@
+package com.medical.dme.common.xml;
+
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.model.Patient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Vue légère d'un dossier : identifiant, date de création et patient.
+ * Les consultations et prescriptions ne sont lues qu'au premier accès,
+ * par un unmarshalling complet (et validé) du document source.
+ */
+public class MedicalRecordHeader {
+
+    private final String recordId;
+    private final LocalDateTime creationDate;
+    private final Patient patient;
+    private final Callable<MedicalRecord> loader;
+    private volatile MedicalRecord fullRecord;
+
+    MedicalRecordHeader(String recordId, LocalDateTime creationDate, Patient patient,
+                        Callable<MedicalRecord> loader) {
+        this.recordId = recordId;
+        this.creationDate = creationDate;
+        this.patient = patient;
+        this.loader = loader;
+    }
+
+    public String getRecordId() {
+        return recordId;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public List<String> getConsultations() {
+        return toMedicalRecord().getConsultations();
+    }
+
+    public List<String> getPrescriptions() {
+        return toMedicalRecord().getPrescriptions();
+    }
+
+    public boolean isLoaded() {
+        return fullRecord != null;
+    }
+
+    // Charge le dossier complet une seule fois
+    public MedicalRecord toMedicalRecord() {
+        MedicalRecord record = fullRecord;
+        if (record == null) {
+            synchronized (this) {
+                record = fullRecord;
+                if (record == null) {
+                    try {
+                        record = loader.call();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Failed to load medical record " + recordId, e);
+                    }
+                    fullRecord = record;
+                }
+            }
+        }
+        return record;
+    }
+}
@@ -0,0 +1,62 @@
+package com.medical.dme.common.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MedicalRecordImportStats {
+
+    // Nombre maximal d'erreurs conservées pour le rapport
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final long startNanos = System.nanoTime();
+    private long endNanos;
+    private long imported;
+    private long rejected;
+    private final List<String> errors = new ArrayList<>();
+
+    void recordImported() {
+        imported++;
+    }
+
+    void recordRejected(long index, List<String> recordErrors) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("medicalRecord #" + index + ": " + String.join("; ", recordErrors));
+        }
+    }
+
+    void finish() {
+        if (endNanos == 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public double getElapsedSeconds() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000_000.0;
+    }
+
+    public double getRecordsPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? (imported + rejected) / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported: %d, Rejected: %d, Elapsed: %.2fs, Throughput: %.0f records/s",
+                imported, rejected, getElapsedSeconds(), getRecordsPerSecond());
+    }
+}
@@ -0,0 +1,145 @@
+package com.medical.dme.common.xml;
+
+import com.medical.dme.common.model.MedicalRecord;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lecture en flux d'un export contenant de nombreux éléments {@code medicalRecord}.
+ * Un seul dossier est matérialisé à la fois, la mémoire reste donc constante
+ * quelle que soit la taille du fichier.
+ */
+public class MedicalRecordStreamReader implements Closeable {
+
+    private static final String RECORD_ELEMENT = "medicalRecord";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final InputStream input;
+    private final XMLStreamReader reader;
+    private final Unmarshaller unmarshaller;
+    private final RecordValidationEvents events = new RecordValidationEvents();
+    private final MedicalRecordImportStats stats = new MedicalRecordImportStats();
+    private long index;
+
+    public MedicalRecordStreamReader(InputStream input) throws XMLStreamException, JAXBException {
+        this.input = input;
+        this.reader = INPUT_FACTORY.createXMLStreamReader(input);
+
+        // Unmarshaller dédié : le gestionnaire d'événements lui est propre
+        this.unmarshaller = MedicalRecordXMLProcessor.context().createUnmarshaller();
+        this.unmarshaller.setSchema(MedicalRecordXMLProcessor.schema());
+        this.unmarshaller.setEventHandler(events);
+    }
+
+    // Renvoie le prochain dossier valide, ou null en fin de fichier
+    public MedicalRecord next() throws XMLStreamException, JAXBException {
+        while (advanceToRecord()) {
+            index++;
+            events.reset();
+
+            // Validation XSD par dossier
+            MedicalRecord record = unmarshaller.unmarshal(reader, MedicalRecord.class).getValue();
+            if (events.hasErrors()) {
+                stats.recordRejected(index, events.getErrors());
+                continue;
+            }
+
+            stats.recordImported();
+            return record;
+        }
+
+        stats.finish();
+        return null;
+    }
+
+    public MedicalRecordImportStats forEach(Consumer<MedicalRecord> consumer)
+            throws XMLStreamException, JAXBException {
+        MedicalRecord record;
+        while ((record = next()) != null) {
+            consumer.accept(record);
+        }
+        return stats;
+    }
+
+    // Le flux doit être fermé par l'appelant (try-with-resources)
+    public Stream<MedicalRecord> stream() {
+        Spliterator<MedicalRecord> spliterator = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super MedicalRecord> action) {
+                try {
+                    MedicalRecord record = next();
+                    if (record == null) {
+                        return false;
+                    }
+                    action.accept(record);
+                    return true;
+                } catch (XMLStreamException | JAXBException e) {
+                    throw new IllegalStateException("Failed to read medicalRecord #" + index, e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public MedicalRecordImportStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stats.finish();
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+
+    static XMLInputFactory inputFactory() {
+        return INPUT_FACTORY;
+    }
+
+    private boolean advanceToRecord() throws XMLStreamException {
+        while (true) {
+            if (reader.isStartElement() && RECORD_ELEMENT.equals(reader.getLocalName())) {
+                return true;
+            }
+            if (!reader.hasNext()) {
+                return false;
+            }
+            reader.next();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Pas de DTD ni d'entités externes dans les exports partenaires
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -1,50 +1,235 @@
 package com.medical.dme.common.xml;
 
 import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.model.Patient;
 import jakarta.xml.bind.*;
+import org.w3c.dom.Document;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class MedicalRecordXMLProcessor {
 
-    public MedicalRecord unmarshalFromXML(String xmlFilePath) throws Exception {
-        JAXBContext context = JAXBContext.newInstance(MedicalRecord.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+    // Instance partagée : le contexte JAXB et le schéma compilé sont thread-safe
+    private static final MedicalRecordXMLProcessor SHARED = new MedicalRecordXMLProcessor();
+
+    // Marshaller/Unmarshaller ne sont pas thread-safe : un par thread
+    private static final ThreadLocal<Unmarshaller> UNMARSHALLERS =
+            ThreadLocal.withInitial(MedicalRecordXMLProcessor::createUnmarshaller);
+    // Lecture partielle (en-tête seul) : pas de validation XSD sur un fragment
+    private static final ThreadLocal<Unmarshaller> HEADER_UNMARSHALLERS =
+            ThreadLocal.withInitial(MedicalRecordXMLProcessor::createHeaderUnmarshaller);
+    private static final ThreadLocal<Marshaller> MARSHALLERS =
+            ThreadLocal.withInitial(() -> createMarshaller(true));
+    private static final ThreadLocal<Marshaller> COMPACT_MARSHALLERS =
+            ThreadLocal.withInitial(() -> createMarshaller(false));
 
-        // Validation avec XSD
-        SchemaFactory sf = SchemaFactory.newInstance(javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        Schema schema = sf.newSchema(new StreamSource(
-                getClass().getResourceAsStream("/medical-record.xsd")
-        ));
-        unmarshaller.setSchema(schema);
+    public static MedicalRecordXMLProcessor shared() {
+        return SHARED;
+    }
 
-        try (InputStream is = Files.newInputStream(Paths.get(xmlFilePath))) {
-            return (MedicalRecord) unmarshaller.unmarshal(is);
+    public MedicalRecord unmarshalFromXML(String xmlFilePath) throws Exception {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(Paths.get(xmlFilePath)))) {
+            return unmarshalFromXML(is);
         }
     }
 
+    public MedicalRecord unmarshalFromXML(InputStream is) throws Exception {
+        return (MedicalRecord) UNMARSHALLERS.get().unmarshal(is);
+    }
+
     public void marshalToXML(MedicalRecord record, String outputPath) throws Exception {
-        JAXBContext context = JAXBContext.newInstance(MedicalRecord.class);
-        Marshaller marshaller = context.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputPath)))) {
+            MARSHALLERS.get().marshal(record, os);
+        }
+    }
 
-        try (FileWriter writer = new FileWriter(outputPath)) {
-            marshaller.marshal(record, writer);
+    public String marshalToString(MedicalRecord record) throws Exception {
+        StringWriter writer = new StringWriter();
+        COMPACT_MARSHALLERS.get().marshal(record, writer);
+        return writer.toString();
+    }
+
+    public byte[] marshalToBytes(MedicalRecord record) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        COMPACT_MARSHALLERS.get().marshal(record, out);
+        return out.toByteArray();
+    }
+
+    // Lit recordId, creationDate et le patient puis arrête l'analyse après </patient>
+    public MedicalRecordHeader readHeader(String xmlFilePath) throws Exception {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(Paths.get(xmlFilePath)))) {
+            return readHeader(is, () -> unmarshalFromXML(xmlFilePath));
         }
     }
 
+    public MedicalRecordHeader readHeader(byte[] xmlContent) throws Exception {
+        return readHeader(new ByteArrayInputStream(xmlContent),
+                () -> unmarshalFromXML(new ByteArrayInputStream(xmlContent)));
+    }
+
+    private MedicalRecordHeader readHeader(InputStream is, Callable<MedicalRecord> loader) throws Exception {
+        XMLStreamReader reader = MedicalRecordStreamReader.inputFactory().createXMLStreamReader(is);
+        try {
+            reader.nextTag();
+            if (!"medicalRecord".equals(reader.getLocalName())) {
+                throw new IllegalArgumentException("Unexpected root element: " + reader.getLocalName());
+            }
+
+            String recordId = reader.getAttributeValue(null, "recordId");
+            LocalDateTime creationDate = parseDateTime(reader.getAttributeValue(null, "creationDate"));
+
+            // Avancer jusqu'à <patient> sans descendre dans les listes
+            Patient patient = null;
+            int depth = 1;
+            while (depth > 0 && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == 1 && "patient".equals(reader.getLocalName())) {
+                        patient = HEADER_UNMARSHALLERS.get().unmarshal(reader, Patient.class).getValue();
+                        break;
+                    }
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+
+            return new MedicalRecordHeader(recordId, creationDate, patient, loader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            // xs:dateTime peut porter un fuseau
+            return OffsetDateTime.parse(value).toLocalDateTime();
+        }
+    }
+
+    // Import en flux d'un export multi-dossiers, un dossier à la fois
+    public MedicalRecordImportStats importFromXML(String xmlFilePath, Consumer<MedicalRecord> consumer)
+            throws Exception {
+        try (MedicalRecordStreamReader reader = new MedicalRecordStreamReader(
+                new BufferedInputStream(Files.newInputStream(Paths.get(xmlFilePath)), 64 * 1024))) {
+            MedicalRecordImportStats stats = reader.forEach(consumer);
+            System.out.println("Import of " + xmlFilePath + " completed - " + stats);
+            return stats;
+        }
+    }
+
+    public Stream<MedicalRecord> streamFromXML(InputStream is) throws Exception {
+        return new MedicalRecordStreamReader(is).stream();
+    }
+
     public String evaluateXPath(String xmlContent, String xpathExpression) throws Exception {
         // Implémentation XPath pour extraire des données spécifiques
-        javax.xml.xpath.XPathFactory xpathFactory = javax.xml.xpath.XPathFactory.newInstance();
-        javax.xml.xpath.XPath xpath = xpathFactory.newXPath();
+        return evaluateXPath(parseDocument(xmlContent), xpathExpression);
+    }
+
+    // Document analysé une fois, puis réutilisé pour plusieurs expressions
+    public Document parseDocument(String xmlContent) throws Exception {
+        return CompiledXPathCache.parse(xmlContent);
+    }
+
+    public String evaluateXPath(Document document, String xpathExpression) throws Exception {
+        return CompiledXPathCache.compile(xpathExpression).evaluate(document);
+    }
+
+    public Map<String, String> evaluateXPaths(Document document, Collection<String> xpathExpressions)
+            throws Exception {
+        Map<String, String> results = new LinkedHashMap<>();
+        for (String expression : xpathExpressions) {
+            results.put(expression, evaluateXPath(document, expression));
+        }
+        return results;
+    }
+
+    public Map<String, String> evaluateXPaths(String xmlContent, Collection<String> xpathExpressions)
+            throws Exception {
+        return evaluateXPaths(parseDocument(xmlContent), xpathExpressions);
+    }
+
+    static JAXBContext context() {
+        return Holder.CONTEXT;
+    }
+
+    static Schema schema() {
+        return Holder.SCHEMA;
+    }
 
-        InputSource source = new InputSource(new StringReader(xmlContent));
-        return xpath.evaluate(xpathExpression, source);
+    static Unmarshaller unmarshaller() {
+        return UNMARSHALLERS.get();
+    }
+
+    private static Unmarshaller createUnmarshaller() {
+        try {
+            Unmarshaller unmarshaller = context().createUnmarshaller();
+            // Validation avec XSD
+            unmarshaller.setSchema(schema());
+            return unmarshaller;
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Unable to create JAXB unmarshaller", e);
+        }
+    }
+
+    private static Unmarshaller createHeaderUnmarshaller() {
+        try {
+            return context().createUnmarshaller();
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Unable to create JAXB unmarshaller", e);
+        }
+    }
+
+    private static Marshaller createMarshaller(boolean formatted) {
+        try {
+            Marshaller marshaller = context().createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formatted);
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+            return marshaller;
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Unable to create JAXB marshaller", e);
+        }
+    }
+
+    // Initialisé une seule fois, au premier usage
+    private static final class Holder {
+        static final JAXBContext CONTEXT;
+        static final Schema SCHEMA;
+
+        static {
+            try {
+                CONTEXT = JAXBContext.newInstance(MedicalRecord.class);
+
+                SchemaFactory sf = SchemaFactory.newInstance(javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                try (InputStream xsd = MedicalRecordXMLProcessor.class.getResourceAsStream("/medical-record.xsd")) {
+                    SCHEMA = sf.newSchema(new StreamSource(xsd));
+                }
+            } catch (Exception e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package com.medical.dme.common.xml;
+
+import jakarta.xml.bind.ValidationEvent;
+import jakarta.xml.bind.ValidationEventHandler;
+import jakarta.xml.bind.ValidationEventLocator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Collecte les erreurs XSD d'un dossier sans interrompre la lecture du flux
+class RecordValidationEvents implements ValidationEventHandler {
+
+    private final List<String> errors = new ArrayList<>();
+
+    @Override
+    public boolean handleEvent(ValidationEvent event) {
+        if (event.getSeverity() == ValidationEvent.WARNING) {
+            return true;
+        }
+
+        ValidationEventLocator locator = event.getLocator();
+        String position = locator != null
+                ? "line " + locator.getLineNumber() + ", column " + locator.getColumnNumber() + ": "
+                : "";
+        errors.add(position + event.getMessage());
+
+        // Continuer pour garder le lecteur StAX aligné sur la fin de l'élément
+        return event.getSeverity() != ValidationEvent.FATAL_ERROR;
+    }
+
+    void reset() {
+        errors.clear();
+    }
+
+    boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+}
@@ -0,0 +1,96 @@
+package com.medical.dme.common.xml;
+
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.model.Patient;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.Unmarshaller;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare le débit (dossiers/seconde) entre l'ancien chemin, qui recréait le
+ * JAXBContext et recompilait le XSD à chaque appel, et le processeur partagé.
+ */
+public class MedicalRecordXMLProcessorBenchmark {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        MedicalRecord record = sampleRecord();
+        MedicalRecordXMLProcessor processor = MedicalRecordXMLProcessor.shared();
+        byte[] xml = processor.marshalToBytes(record);
+
+        run("before (context per call)", xml, MedicalRecordXMLProcessorBenchmark::legacyRoundTrip);
+        run("after  (shared processor)", xml, bytes -> {
+            MedicalRecord r = processor.unmarshalFromXML(new ByteArrayInputStream(bytes));
+            processor.marshalToString(r);
+        });
+    }
+
+    private interface RoundTrip {
+        void run(byte[] xml) throws Exception;
+    }
+
+    private static void run(String label, byte[] xml, RoundTrip roundTrip) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            roundTrip.run(xml);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            roundTrip.run(xml);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        System.out.printf("%s : %.0f records/s%n", label, ITERATIONS / seconds);
+    }
+
+    private static void legacyRoundTrip(byte[] xml) throws Exception {
+        JAXBContext context = JAXBContext.newInstance(MedicalRecord.class);
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+
+        SchemaFactory sf = SchemaFactory.newInstance(javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        try (InputStream xsd = MedicalRecordXMLProcessorBenchmark.class.getResourceAsStream("/medical-record.xsd")) {
+            unmarshaller.setSchema(sf.newSchema(new StreamSource(xsd)));
+        }
+        MedicalRecord record = (MedicalRecord) unmarshaller.unmarshal(new ByteArrayInputStream(xml));
+
+        Marshaller marshaller = JAXBContext.newInstance(MedicalRecord.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+        marshaller.marshal(record, new StringWriter());
+    }
+
+    private static MedicalRecord sampleRecord() {
+        Patient patient = new Patient();
+        patient.setPatientId("PAT001");
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patient.setDateOfBirth(LocalDate.of(1980, 5, 15));
+        patient.setGender(Patient.Gender.MALE);
+
+        List<String> consultations = new ArrayList<>();
+        List<String> prescriptions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            consultations.add("Consultation " + i + " - Fever, cough");
+            prescriptions.add("Paracetamol 500mg - " + i);
+        }
+
+        MedicalRecord record = new MedicalRecord();
+        record.setRecordId("REC-001");
+        record.setCreationDate(LocalDateTime.now());
+        record.setPatient(patient);
+        record.setConsultations(consultations);
+        record.setPrescriptions(prescriptions);
+        return record;
+    }
+}
@@ -1,9 +1,46 @@
 package com.medical.dme.distributed.rmi;
 
+import com.medical.dme.common.model.MedicalRecord;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface IMedicalRecordRMIService extends Remote {
+    MedicalRecord getMedicalRecord(String patientId) throws RemoteException;
+    void syncMedicalRecord(MedicalRecord record) throws RemoteException;
+
+    // Opérations groupées, un seul aller-retour ; les patients inconnus sont absents du résultat
+    Map<String, MedicalRecord> getMedicalRecords(Collection<String> patientIds) throws RemoteException;
+    void syncMedicalRecords(List<MedicalRecord> records) throws RemoteException;
+
+    // Parcours de tous les dossiers par pages d'au plus pageSize ; le curseur doit être fermé
+    MedicalRecordCursor openMedicalRecordCursor(int pageSize) throws RemoteException;
+
+    // Delta encodé par MedicalRecordDelta ; false si la version de base ne correspond pas
+    boolean applyMedicalRecordDelta(String patientId, byte[] delta) throws RemoteException;
+
+    // Réplication entre nœuds, sans re-propagation, par patientId : dossiers complets (codec binaire)
+    // puis deltas, chacun avec sa version ; une mise à jour pas plus récente que l'état local est
+    // ignorée. Renvoie les patientId dont le delta a été rejeté, à renvoyer en entier
+    Set<String> replicateMedicalRecords(String sourceNodeId, Map<String, byte[]> records,
+                                        Map<String, byte[]> deltas,
+                                        Map<String, RecordVersion> versions) throws RemoteException;
+
+    // Notifications des dossiers modifiés sur ce nœud ; remplace un listener de même identifiant.
+    // À renouveler périodiquement : un listener injoignable est retiré par le nœud. Renvoie true
+    // s'il n'était pas enregistré, auquel cas des invalidations ont pu être perdues
+    boolean addInvalidationListener(String listenerId, MedicalRecordInvalidationListener listener) throws RemoteException;
+    void removeInvalidationListener(String listenerId) throws RemoteException;
+
+    boolean isNodeAvailable() throws RemoteException;
+    String getNodeInfo() throws RemoteException;
+    void registerNode(String nodeId, String endpoint) throws RemoteException;
+    void unregisterNode(String nodeId) throws RemoteException;
 
-public interface MedicalRecordRMIService extends Remote {
-    String getMedicalRecord(String patientId) throws RemoteException;
-    String syncMedicalRecord(String recordData) throws RemoteException;
-}
\ No newline at end of file
+    // Nœuds connus de ce nœud (répliques et clients) : nodeId -> endpoint
+    Map<String, String> getRegisteredNodes() throws RemoteException;
+}
@@ -0,0 +1,23 @@
+package com.medical.dme.distributed.rmi;
+
+import com.medical.dme.common.model.MedicalRecord;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Itérateur distant sur les dossiers d'un nœud, ouvert par
+ * IMedicalRecordRMIService.openMedicalRecordCursor. Les patients sont ceux
+ * présents à l'ouverture ; chaque page reflète leur dernier état.
+ */
+public interface MedicalRecordCursor extends Remote {
+
+    // Page suivante ; vide quand le parcours est terminé
+    List<MedicalRecord> nextPage() throws RemoteException;
+
+    // Nombre de patients restant à parcourir
+    int remaining() throws RemoteException;
+
+    void close() throws RemoteException;
+}
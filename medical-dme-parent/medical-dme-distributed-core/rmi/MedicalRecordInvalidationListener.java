@@ -0,0 +1,15 @@
+package com.medical.dme.distributed.rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Set;
+
+/**
+ * Rappel exporté par un client et enregistré auprès d'un nœud : le nœud y
+ * signale les patients dont le dossier a changé, qu'il ait été écrit
+ * localement ou reçu par réplication.
+ */
+public interface MedicalRecordInvalidationListener extends Remote {
+
+    void invalidate(Set<String> patientIds) throws RemoteException;
+}
@@ -0,0 +1,65 @@
+package com.medical.dme.distributed.rmi;
+
+import java.io.Serializable;
+
+/**
+ * Version d'un dossier répliqué, départagée par la dernière écriture :
+ * horodatage de l'écriture puis, à égalité, nodeId du nœud qui l'a faite.
+ * Une écriture locale prend un horodatage supérieur à celui de la version
+ * qu'elle remplace, même si l'horloge de son nœud retarde.
+ */
+public final class RecordVersion implements Serializable, Comparable<RecordVersion> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timestamp;
+    private final String nodeId;
+
+    public RecordVersion(long timestamp, String nodeId) {
+        this.timestamp = timestamp;
+        this.nodeId = nodeId;
+    }
+
+    // Version d'une nouvelle écriture sur nodeId ; previous peut être null
+    public static RecordVersion next(RecordVersion previous, String nodeId) {
+        long now = System.currentTimeMillis();
+        return new RecordVersion(previous != null ? Math.max(now, previous.timestamp + 1) : now, nodeId);
+    }
+
+    public boolean isNewerThan(RecordVersion other) {
+        return other == null || compareTo(other) > 0;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public int compareTo(RecordVersion other) {
+        int byTime = Long.compare(timestamp, other.timestamp);
+        return byTime != 0 ? byTime : nodeId.compareTo(other.nodeId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RecordVersion)) {
+            return false;
+        }
+        RecordVersion other = (RecordVersion) o;
+        return timestamp == other.timestamp && nodeId.equals(other.nodeId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(timestamp) * 31 + nodeId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + "@" + nodeId;
+    }
+}
@@ -1,13 +1,23 @@
 package com.medical.dme.distributed.rmi.client;
 
 import com.medical.dme.distributed.rmi.IMedicalRecordRMIService;
+import com.medical.dme.distributed.rmi.MedicalRecordCursor;
+import com.medical.dme.common.diff.MedicalRecordDelta;
+import com.medical.dme.common.diff.MedicalRecordDiff;
 import com.medical.dme.common.model.MedicalRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import javax.annotation.PreDestroy;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Component
 public class MedicalRecordRMIClient {
@@ -21,64 +31,259 @@ public class MedicalRecordRMIClient {
     @Value("${rmi.server.name:MedicalRecordService}")
     private String serviceName;
 
-    private IMedicalRecordRMIService rmiService;
+    // Nœuds supplémentaires (rmi://host:port/service, séparés par des virgules) ;
+    // les autres répliques sont découvertes auprès des nœuds joignables
+    @Value("${rmi.client.nodes:}")
+    private String seedNodes;
+
+    // Nœud recevant toutes les écritures (rmi://host:port/service) ; vide : chaque patient a
+    // un nœud propriétaire, choisi par hachage. Les lectures sont réparties sur tous les nœuds
+    @Value("${rmi.client.primary-node:}")
+    private String primaryNode;
+
+    // Délai de réponse d'un appel RMI, au-delà duquel le nœud compte comme en panne ; 0 : aucun
+    @Value("${rmi.client.call-timeout-ms:30000}")
+    private long callTimeoutMillis;
+
+    // Nœuds essayés au plus pour un appel dont le nœud est injoignable
+    @Value("${rmi.client.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${rmi.client.eject-after-failures:3}")
+    private int ejectAfterFailures;
+
+    // Durée d'éviction d'un nœud avant de le sonder à nouveau
+    @Value("${rmi.client.eject-seconds:30}")
+    private long ejectSeconds;
+
+    @Value("${rmi.client.health-check-seconds:5}")
+    private long healthCheckSeconds;
+
+    // 0 : pas de découverte périodique, seulement au démarrage
+    @Value("${rmi.client.discovery-interval-seconds:30}")
+    private long discoveryIntervalSeconds;
+
+    // Cache local des lectures, invalidé par le nœud à chaque modification d'un dossier
+    @Value("${rmi.client.near-cache.enabled:false}")
+    private boolean nearCacheEnabled;
+
+    @Value("${rmi.client.near-cache.max-size:10000}")
+    private long nearCacheMaxSize;
+
+    @Value("${rmi.client.near-cache.ttl-seconds:30}")
+    private long nearCacheTtlSeconds;
+
+    private RMINodePool nodePool;
+    private NearRecordCache nearCache;
+    private final String clientNodeId = "RMI_Client_" + System.currentTimeMillis();
 
     @PostConstruct
     public void init() {
+        // Avant toute connexion RMI, dont l'export du listener du cache local
+        RMINodePool.setCallTimeout(callTimeoutMillis);
+        if (nearCacheEnabled) {
+            try {
+                nearCache = new NearRecordCache(nearCacheMaxSize, nearCacheTtlSeconds);
+                System.out.println("Near cache enabled (max " + nearCacheMaxSize + " records, TTL " +
+                        nearCacheTtlSeconds + " s)");
+            } catch (Exception e) {
+                System.err.println("Near cache disabled, unable to export invalidation listener: " + e.getMessage());
+            }
+        }
         connectToRMIServer();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (nodePool != null) {
+            if (nearCache != null) {
+                nodePool.forEachNode(service -> service.removeInvalidationListener(clientNodeId));
+            }
+            nodePool.shutdown();
+        }
+        if (nearCache != null) {
+            nearCache.close();
+        }
+    }
+
     private void connectToRMIServer() {
-        try {
-            System.out.println("Connecting to RMI registry at " +
-                    registryHost + ":" + registryPort);
+        nodePool = new RMINodePool(serviceName, primaryNode, maxAttempts, ejectAfterFailures,
+                TimeUnit.SECONDS.toMillis(ejectSeconds));
+        nodePool.addNode("rmi://" + registryHost + ":" + registryPort + "/" + serviceName);
+        for (String endpoint : seedNodes.split(",")) {
+            if (!endpoint.isBlank()) {
+                nodePool.addNode(endpoint.trim());
+            }
+        }
+        if (!primaryNode.isBlank()) {
+            nodePool.addNode(primaryNode.trim());
+        }
 
-            Registry registry = LocateRegistry.getRegistry(registryHost, registryPort);
-            rmiService = (IMedicalRecordRMIService) registry.lookup(serviceName);
+        System.out.println("Connecting to RMI nodes: " + nodePool);
+        nodePool.start(this::registerWithNode, TimeUnit.SECONDS.toMillis(healthCheckSeconds),
+                TimeUnit.SECONDS.toMillis(discoveryIntervalSeconds));
 
+        try {
             // Tester la connexion
-            if (rmiService.isNodeAvailable()) {
-                System.out.println("Successfully connected to RMI service");
-                System.out.println("Node Info: " + rmiService.getNodeInfo());
-
-                // S'enregistrer comme nœud client
-                registerAsNode();
-            }
-
+            System.out.println("Node Info: " + nodePool.call(IMedicalRecordRMIService::getNodeInfo));
+            System.out.println("Successfully connected to RMI service (" + nodePool.availableNodes() + " node(s))");
         } catch (Exception e) {
             System.err.println("Failed to connect to RMI server: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
-    private void registerAsNode() {
-        try {
-            String clientNodeId = "RMI_Client_" + System.currentTimeMillis();
-            String clientEndpoint = "client://" + System.getProperty("user.name");
+    // S'enregistrer comme nœud client, et pour les invalidations du cache local, auprès de chaque nœud ;
+    // renouvelé à chaque contrôle de santé, un nœud pouvant avoir retiré le listener
+    private void registerWithNode(IMedicalRecordRMIService service) throws RemoteException {
+        String clientEndpoint = "client://" + System.getProperty("user.name");
+        service.registerNode(clientNodeId, clientEndpoint);
 
-            rmiService.registerNode(clientNodeId, clientEndpoint);
-            System.out.println("Registered as node: " + clientNodeId);
-
-        } catch (Exception e) {
-            System.err.println("Failed to register node: " + e.getMessage());
+        // En cas d'échec, le pool réessaie au prochain contrôle ; d'ici là le cache ne tient qu'à son TTL
+        if (nearCache != null && service.addInvalidationListener(clientNodeId, nearCache)) {
+            // Listener absent jusqu'ici : les invalidations manquées ne sont pas rattrapables
+            nearCache.invalidateAll();
         }
     }
 
+    // Nœuds du pool avec leur état (requêtes en cours, latence, éviction)
+    public String getNodeStats() {
+        return nodePool != null ? nodePool.toString() : "[]";
+    }
+
     public MedicalRecord getMedicalRecord(String patientId) {
         try {
-            return rmiService.getMedicalRecord(patientId);
+            if (nearCache == null) {
+                return nodePool.call(service -> service.getMedicalRecord(patientId));
+            }
+            MedicalRecord record = nearCache.get(patientId);
+            if (record == null) {
+                long epoch = nearCache.epoch();
+                record = nodePool.call(service -> service.getMedicalRecord(patientId));
+                nearCache.put(patientId, record, epoch);
+            }
+            return record;
         } catch (Exception e) {
             System.err.println("RMI call failed: " + e.getMessage());
             return null;
         }
     }
 
+    // Patients inconnus absents du résultat ; null si l'appel échoue
+    public Map<String, MedicalRecord> getMedicalRecords(Collection<String> patientIds) {
+        try {
+            if (nearCache == null) {
+                List<String> requested = new ArrayList<>(patientIds);
+                return nodePool.call(service -> service.getMedicalRecords(requested));
+            }
+            Map<String, MedicalRecord> records = new HashMap<>();
+            List<String> missing = new ArrayList<>();
+            for (String patientId : patientIds) {
+                MedicalRecord record = nearCache.get(patientId);
+                if (record != null) {
+                    records.put(patientId, record);
+                } else {
+                    missing.add(patientId);
+                }
+            }
+            if (!missing.isEmpty()) {
+                long epoch = nearCache.epoch();
+                Map<String, MedicalRecord> fetched = nodePool.call(service -> service.getMedicalRecords(missing));
+                fetched.forEach((patientId, record) -> nearCache.put(patientId, record, epoch));
+                records.putAll(fetched);
+            }
+            return records;
+        } catch (Exception e) {
+            System.err.println("RMI batch call failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Parcourt tous les dossiers du nœud par pages ; false si le parcours a été interrompu
+    public boolean forEachMedicalRecord(int pageSize, Consumer<MedicalRecord> action) {
+        MedicalRecordCursor cursor = null;
+        try {
+            // Le curseur reste attaché au nœud qui l'a ouvert
+            cursor = nodePool.call(service -> service.openMedicalRecordCursor(pageSize));
+            for (List<MedicalRecord> page = cursor.nextPage(); !page.isEmpty(); page = cursor.nextPage()) {
+                page.forEach(action);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("RMI record scan failed: " + e.getMessage());
+            return false;
+        } finally {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (Exception e) {
+                    // Le serveur le libérera à l'expiration du bail DGC
+                }
+            }
+        }
+    }
+
+    public void syncMedicalRecords(List<MedicalRecord> records) {
+        try {
+            // Un lot par nœud propriétaire ; chaque groupe est une nouvelle liste, sérialisable
+            for (List<MedicalRecord> batch : nodePool.groupByOwner(records, MedicalRecordRMIClient::patientId)) {
+                nodePool.callOwner(patientId(batch.get(0)), service -> {
+                    service.syncMedicalRecords(batch);
+                    return null;
+                });
+            }
+            System.out.println(records.size() + " records synced successfully via RMI");
+        } catch (Exception e) {
+            System.err.println("Failed to sync records via RMI: " + e.getMessage());
+        } finally {
+            for (MedicalRecord record : records) {
+                invalidateNearCache(record);
+            }
+        }
+    }
+
     public void syncMedicalRecord(MedicalRecord record) {
         try {
-            rmiService.syncMedicalRecord(record);
+            nodePool.callOwner(patientId(record), service -> {
+                service.syncMedicalRecord(record);
+                return null;
+            });
             System.out.println("Record synced successfully via RMI");
         } catch (Exception e) {
             System.err.println("Failed to sync record via RMI: " + e.getMessage());
+        } finally {
+            invalidateNearCache(record);
+        }
+    }
+
+    // Envoie uniquement les changements depuis previous, ou le dossier complet si le serveur a divergé
+    public void syncMedicalRecord(MedicalRecord previous, MedicalRecord current) {
+        try {
+            MedicalRecordDelta delta = MedicalRecordDiff.diff(previous, current);
+            if (delta.isEmpty()) {
+                return;
+            }
+
+            String patientId = current.getPatient().getPatientId();
+            byte[] encoded = delta.encode();
+            if (nodePool.callOwner(patientId, service -> service.applyMedicalRecordDelta(patientId, encoded))) {
+                System.out.println("Record delta synced successfully via RMI");
+                invalidateNearCache(current);
+            } else {
+                syncMedicalRecord(current);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to sync record delta via RMI: " + e.getMessage());
+        }
+    }
+
+    private static String patientId(MedicalRecord record) {
+        return record.getPatient().getPatientId();
+    }
+
+    // Sans attendre l'invalidation poussée par le nœud : le client relit sa propre écriture
+    private void invalidateNearCache(MedicalRecord record) {
+        if (nearCache != null && record.getPatient() != null) {
+            nearCache.invalidate(record.getPatient().getPatientId());
         }
     }
 }
@@ -0,0 +1,86 @@
+package com.medical.dme.distributed.rmi.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.distributed.rmi.MedicalRecordInvalidationListener;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache local des dossiers lus par le client, borné en nombre et en durée.
+ * Exporté comme listener : le nœud y pousse les patients modifiés, le TTL
+ * bornant la péremption si une invalidation se perd (nœud redémarré...).
+ * Les dossiers renvoyés sont partagés et ne doivent pas être modifiés.
+ */
+final class NearRecordCache extends UnicastRemoteObject implements MedicalRecordInvalidationListener {
+
+    private final Cache<String, MedicalRecord> cache;
+    // Incrémenté à chaque invalidation reçue, pour écarter une lecture commencée avant
+    private final AtomicLong epoch = new AtomicLong();
+
+    NearRecordCache(long maxSize, long ttlSeconds) throws RemoteException {
+        super();
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    MedicalRecord get(String patientId) {
+        return cache.getIfPresent(patientId);
+    }
+
+    // À lire avant l'appel distant dont le résultat sera passé à put
+    long epoch() {
+        return epoch.get();
+    }
+
+    void put(String patientId, MedicalRecord record, long readEpoch) {
+        if (record == null) {
+            return;
+        }
+        cache.put(patientId, record);
+        // Invalidation arrivée pendant la lecture : la valeur lue est peut-être déjà périmée
+        if (epoch.get() != readEpoch) {
+            cache.invalidate(patientId);
+        }
+    }
+
+    void invalidate(String patientId) {
+        epoch.incrementAndGet();
+        cache.invalidate(patientId);
+    }
+
+    void invalidateAll() {
+        epoch.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void invalidate(Set<String> patientIds) {
+        epoch.incrementAndGet();
+        cache.invalidateAll(patientIds);
+    }
+
+    void close() {
+        cache.invalidateAll();
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Déjà retiré
+        }
+    }
+
+    @Override
+    public String toString() {
+        return cache.estimatedSize() + " records, hitRate=" + String.format("%.2f", cache.stats().hitRate()) +
+                ", evictions=" + cache.stats().evictionCount();
+    }
+}
@@ -0,0 +1,171 @@
+package com.medical.dme.distributed.rmi.client;
+
+import com.medical.dme.distributed.rmi.IMedicalRecordRMIService;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Un nœud du pool : stub, requêtes en cours, latence moyenne et état de santé
+final class RMINode {
+
+    // Poids de la dernière mesure dans la moyenne mobile de latence
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    // Sans nouvelle mesure, la latence retenue décroît avec cette constante de temps :
+    // un nœud écarté pour un appel lent finit par être réessayé
+    private static final double LATENCY_DECAY_NANOS = 2_000_000_000.0;
+
+    private final String endpoint;
+    private final String host;
+    private final int port;
+    private final String serviceName;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile double latencyMicros;
+    private volatile long lastSampleNanos;
+    private volatile IMedicalRecordRMIService stub;
+    private volatile int consecutiveFailures;
+    private volatile long ejectedUntil;
+    private volatile boolean registered;
+    private long calls;
+    private long failures;
+
+    RMINode(String endpoint, String defaultServiceName) {
+        URI uri = URI.create(endpoint);
+        this.host = canonicalHost(uri.getHost());
+        this.port = uri.getPort() > 0 ? uri.getPort() : 1099;
+        this.serviceName = uri.getPath() != null && uri.getPath().length() > 1 ? uri.getPath().substring(1) : defaultServiceName;
+        this.endpoint = "rmi://" + host + ":" + port + "/" + serviceName;
+    }
+
+    // Forme unique d'un endpoint (rmi://ip:port/service), clé du nœud dans le pool : le nœud de
+    // départ (rmi.registry.host, localhost par défaut) et le même nœud annoncé par
+    // getRegisteredNodes ne font qu'un, et tous les clients le désignent de la même façon
+    static String normalize(String endpoint, String defaultServiceName) {
+        return new RMINode(endpoint, defaultServiceName).endpoint;
+    }
+
+    // Adresse IP du nœud ; le nom tel quel s'il ne se résout pas. Un nœud local (bouclage) prend
+    // l'adresse de la machine, celle sous laquelle les autres nœuds l'annoncent
+    private static String canonicalHost(String host) {
+        if (host == null || host.isBlank()) {
+            return LocalAddress.VALUE;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress() ? LocalAddress.VALUE : address.getHostAddress();
+        } catch (UnknownHostException e) {
+            return host.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Résolue une seule fois : java.rmi.server.hostname si défini (adresse publiée dans les stubs
+    // RMI), sinon l'adresse du nom d'hôte ; localhost si la machine n'a qu'une adresse de bouclage
+    private static final class LocalAddress {
+        static final String VALUE = resolve();
+
+        private static String resolve() {
+            try {
+                String configured = System.getProperty("java.rmi.server.hostname");
+                InetAddress address = configured != null && !configured.isBlank()
+                        ? InetAddress.getByName(configured) : InetAddress.getLocalHost();
+                return address.isLoopbackAddress() ? "localhost" : address.getHostAddress();
+            } catch (UnknownHostException e) {
+                return "localhost";
+            }
+        }
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    IMedicalRecordRMIService stub() throws RemoteException, NotBoundException {
+        IMedicalRecordRMIService service = stub;
+        if (service == null) {
+            service = (IMedicalRecordRMIService) LocateRegistry.getRegistry(host, port).lookup(serviceName);
+            stub = service;
+        }
+        return service;
+    }
+
+    // Score de routage : requêtes en cours pondérées par la latence moyenne (plus bas = meilleur)
+    double score() {
+        double age = System.nanoTime() - lastSampleNanos;
+        return (outstanding.get() + 1) * (latencyMicros * Math.exp(-age / LATENCY_DECAY_NANOS) + 1);
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    synchronized void succeeded(long latencyNanos) {
+        outstanding.decrementAndGet();
+        double micros = latencyNanos / 1000.0;
+        long now = System.nanoTime();
+        // Une mesure compte d'autant plus que la précédente est ancienne
+        double weight = Math.max(LATENCY_WEIGHT, 1 - Math.exp(-(now - lastSampleNanos) / LATENCY_DECAY_NANOS));
+        latencyMicros = calls == 0 ? micros : latencyMicros + weight * (micros - latencyMicros);
+        lastSampleNanos = now;
+        calls++;
+        consecutiveFailures = 0;
+    }
+
+    // Renvoie true si le nœud vient d'être écarté
+    synchronized boolean failed(int ejectAfterFailures, long ejectMillis) {
+        outstanding.decrementAndGet();
+        calls++;
+        failures++;
+        stub = null;
+        if (++consecutiveFailures >= ejectAfterFailures && !isEjected()) {
+            ejectedUntil = System.currentTimeMillis() + ejectMillis;
+            registered = false;
+            return true;
+        }
+        return false;
+    }
+
+    // Fin d'un appel dont l'échec est applicatif : le nœud a répondu
+    void completed() {
+        outstanding.decrementAndGet();
+    }
+
+    boolean isEjected() {
+        return ejectedUntil > 0;
+    }
+
+    boolean ejectionExpired() {
+        return isEjected() && System.currentTimeMillis() >= ejectedUntil;
+    }
+
+    void reinstate() {
+        consecutiveFailures = 0;
+        ejectedUntil = 0;
+    }
+
+    void extendEjection(long ejectMillis) {
+        ejectedUntil = System.currentTimeMillis() + ejectMillis;
+    }
+
+    boolean isRegistered() {
+        return registered;
+    }
+
+    void setRegistered(boolean registered) {
+        this.registered = registered;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return endpoint + "[" + (isEjected() ? "ejected" : "up") +
+                ", outstanding=" + outstanding.get() +
+                ", latency=" + Math.round(latencyMicros) + " us" +
+                ", calls=" + calls + ", failures=" + failures + "]";
+    }
+}
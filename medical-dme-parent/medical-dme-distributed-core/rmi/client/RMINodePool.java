@@ -0,0 +1,339 @@
+package com.medical.dme.distributed.rmi.client;
+
+import com.medical.dme.distributed.rmi.IMedicalRecordRMIService;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.StubNotFoundException;
+import java.rmi.UnknownHostException;
+import java.rmi.UnmarshalException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Nœuds RMI utilisés par le client, découverts à partir des nœuds de départ
+ * via getRegisteredNodes. Une lecture part vers le meilleur de deux nœuds
+ * tirés au hasard (requêtes en cours pondérées par la latence) et, si le nœud
+ * est injoignable, est rejouée sur un autre. Une écriture part vers le nœud
+ * propriétaire du patient : le nœud primaire s'il est configuré, sinon le premier
+ * dans l'ordre du hachage de rendez-vous (patientId, endpoint), commun à tous les
+ * clients ; en cas de panne, elle passe au suivant dans cet ordre. Un nœud en échec répété est écarté
+ * puis sondé jusqu'à ce qu'il réponde de nouveau. L'initialisation (enregistrement
+ * du client) est rejouée sur chaque nœud en service à chaque contrôle de santé :
+ * un nœud qui l'a oubliée (listener retiré, redémarrage) la retrouve ainsi.
+ * Seules les erreurs de transport comptent comme des pannes : une
+ * RemoteException levée par le service (dossier introuvable...) est renvoyée
+ * telle quelle. Un appel sans réponse au bout de sun.rmi.transport.tcp.responseTimeout
+ * (voir {@link #setCallTimeout(long)}) est une panne du nœud.
+ */
+final class RMINodePool {
+
+    interface RemoteCall<T> {
+        T call(IMedicalRecordRMIService service) throws RemoteException;
+    }
+
+    // Exécuté sur chaque nœud ajouté ou réintégré, puis à chaque contrôle de santé ; doit être idempotent
+    interface NodeInitializer {
+        void init(IMedicalRecordRMIService service) throws RemoteException;
+    }
+
+    private final String serviceName;
+    // Propriétaire de toutes les écritures ; null pour répartir par patient
+    private final String primaryEndpoint;
+    private final int maxAttempts;
+    private final int ejectAfterFailures;
+    private final long ejectMillis;
+    private final Map<String, RMINode> nodes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile NodeInitializer initializer;
+
+    RMINodePool(String serviceName, String primaryEndpoint, int maxAttempts, int ejectAfterFailures, long ejectMillis) {
+        this.serviceName = serviceName;
+        this.primaryEndpoint = primaryEndpoint == null || primaryEndpoint.isBlank()
+                ? null : RMINode.normalize(primaryEndpoint.trim(), serviceName);
+        this.maxAttempts = maxAttempts;
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectMillis = ejectMillis;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rmi-client-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Délai de réponse des appels RMI de la JVM, lu une seule fois par le transport TCP :
+    // à fixer avant le premier appel sortant. Une valeur déjà définie (-D...) est conservée
+    static void setCallTimeout(long timeoutMillis) {
+        if (timeoutMillis > 0 && System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+            System.setProperty("sun.rmi.transport.tcp.responseTimeout", Long.toString(timeoutMillis));
+        }
+    }
+
+    // Endpoint de la forme rmi://host[:port][/service], normalisé ; false si le nœud est déjà connu
+    boolean addNode(String endpoint) {
+        RMINode node = new RMINode(endpoint, serviceName);
+        if (nodes.putIfAbsent(node.endpoint(), node) != null) {
+            return false;
+        }
+        System.out.println("RMI node added: " + node.endpoint());
+        if (initializer != null) {
+            initialize(node);
+        }
+        return true;
+    }
+
+    void start(NodeInitializer initializer, long healthCheckMillis, long discoveryMillis) {
+        this.initializer = initializer;
+        for (RMINode node : nodes.values()) {
+            initialize(node);
+        }
+        discover();
+        scheduler.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis, TimeUnit.MILLISECONDS);
+        if (discoveryMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::discover, discoveryMillis, discoveryMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Lecture : n'importe quel nœud
+    <T> T call(RemoteCall<T> call) throws RemoteException {
+        return call(call, this::choose);
+    }
+
+    // Écriture : nœud propriétaire de ownerKey (patientId), puis les suivants dans le même ordre
+    <T> T callOwner(String ownerKey, RemoteCall<T> call) throws RemoteException {
+        List<RMINode> owners = owners(ownerKey);
+        return call(call, tried -> {
+            for (RMINode node : owners) {
+                if (!tried.contains(node)) {
+                    return node;
+                }
+            }
+            return null;
+        });
+    }
+
+    // Regroupe les éléments par nœud propriétaire, pour un appel callOwner par groupe
+    <E> Collection<List<E>> groupByOwner(Collection<E> items, Function<E, String> ownerKey) {
+        Map<RMINode, List<E>> groups = new LinkedHashMap<>();
+        for (E item : items) {
+            List<RMINode> owners = owners(ownerKey.apply(item));
+            RMINode owner = owners.isEmpty() ? null : owners.get(0);
+            groups.computeIfAbsent(owner, node -> new ArrayList<>()).add(item);
+        }
+        return groups.values();
+    }
+
+    private <T> T call(RemoteCall<T> call, Function<Set<RMINode>, RMINode> chooser) throws RemoteException {
+        Set<RMINode> tried = new HashSet<>();
+        RemoteException lastFailure = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            RMINode node = chooser.apply(tried);
+            if (node == null) {
+                break;
+            }
+            tried.add(node);
+
+            node.begin();
+            try {
+                IMedicalRecordRMIService service = node.stub();
+                long start = System.nanoTime();
+                T result = call.call(service);
+                node.succeeded(System.nanoTime() - start);
+                return result;
+            } catch (RemoteException e) {
+                if (!isNodeFailure(e)) {
+                    node.completed();
+                    throw e;
+                }
+                lastFailure = e;
+                failed(node, e);
+            } catch (NotBoundException e) {
+                lastFailure = new RemoteException("Service not bound on " + node.endpoint(), e);
+                failed(node, e);
+            } catch (RuntimeException e) {
+                node.completed();
+                throw e;
+            }
+        }
+        throw lastFailure != null ? lastFailure : new RemoteException("No RMI node available");
+    }
+
+    // Sur chaque nœud en service, sans reprise ; pour la désinscription du client
+    void forEachNode(NodeInitializer action) {
+        for (RMINode node : nodes.values()) {
+            if (!node.isEjected()) {
+                try {
+                    action.init(node.stub());
+                } catch (Exception e) {
+                    System.err.println("RMI call to " + node.endpoint() + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    int availableNodes() {
+        int available = 0;
+        for (RMINode node : nodes.values()) {
+            if (!node.isEjected()) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return nodes.values().toString();
+    }
+
+    // Meilleur de deux nœuds au hasard ; les nœuds écartés en dernier recours seulement
+    private RMINode choose(Set<RMINode> excluded) {
+        List<RMINode> candidates = new ArrayList<>();
+        List<RMINode> ejected = new ArrayList<>();
+        for (RMINode node : nodes.values()) {
+            if (!excluded.contains(node)) {
+                (node.isEjected() ? ejected : candidates).add(node);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = ejected;
+        }
+        if (candidates.size() <= 1) {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        RMINode a = candidates.get(first);
+        RMINode b = candidates.get(second);
+        return a.score() <= b.score() ? a : b;
+    }
+
+    // Ordre de préférence des nœuds pour une écriture : primaire, puis hachage de rendez-vous ;
+    // les nœuds écartés en dernier, le choix ne dépendant de l'état local qu'en cas de panne
+    private List<RMINode> owners(String ownerKey) {
+        List<RMINode> owners = new ArrayList<>(nodes.values());
+        owners.sort(Comparator.comparing(RMINode::isEjected)
+                .thenComparing((RMINode node) -> !node.endpoint().equals(primaryEndpoint))
+                .thenComparing(node -> rendezvousWeight(ownerKey, node.endpoint()), Comparator.reverseOrder())
+                .thenComparing(RMINode::endpoint));
+        return owners;
+    }
+
+    private static long rendezvousWeight(String key, String endpoint) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L + endpoint.hashCode();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private void failed(RMINode node, Exception e) {
+        if (node.failed(ejectAfterFailures, ejectMillis)) {
+            System.err.println("RMI node " + node.endpoint() + " ejected after " + ejectAfterFailures +
+                    " failure(s): " + e.getMessage());
+        }
+    }
+
+    // Erreurs de connexion, réponse interrompue ou délai dépassé : l'appel n'a pas abouti sur ce nœud
+    static boolean isNodeFailure(RemoteException e) {
+        return e instanceof ConnectException
+                || e instanceof ConnectIOException
+                || e instanceof NoSuchObjectException
+                || e instanceof UnknownHostException
+                || e instanceof StubNotFoundException
+                || e.getCause() instanceof SocketTimeoutException
+                || (e instanceof UnmarshalException && e.getCause() instanceof IOException);
+    }
+
+    private void initialize(RMINode node) {
+        NodeInitializer init = initializer;
+        if (init == null) {
+            return;
+        }
+        try {
+            init.init(node.stub());
+            if (!node.isRegistered()) {
+                node.setRegistered(true);
+                System.out.println("Registered with RMI node " + node.endpoint());
+            }
+        } catch (Exception e) {
+            // Réessayé au prochain contrôle
+            node.setRegistered(false);
+            System.err.println("Failed to initialize RMI node " + node.endpoint() + ": " + e.getMessage());
+        }
+    }
+
+    private void checkHealth() {
+        for (RMINode node : nodes.values()) {
+            try {
+                if (node.ejectionExpired()) {
+                    probe(node);
+                } else if (!node.isEjected()) {
+                    // Renouvellement : le nœud a pu retirer le listener sans que le client le sache
+                    initialize(node);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("RMI health check of " + node.endpoint() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void probe(RMINode node) {
+        try {
+            if (node.stub().isNodeAvailable()) {
+                node.reinstate();
+                initialize(node);
+                System.out.println("RMI node reinstated: " + node.endpoint());
+                return;
+            }
+        } catch (Exception e) {
+            // Toujours injoignable
+        }
+        node.extendEjection(ejectMillis);
+    }
+
+    // Ajoute les répliques connues des nœuds en service ; les clients enregistrés sont ignorés
+    private void discover() {
+        for (RMINode node : new ArrayList<>(nodes.values())) {
+            if (node.isEjected()) {
+                continue;
+            }
+            try {
+                for (String endpoint : node.stub().getRegisteredNodes().values()) {
+                    if (endpoint != null && endpoint.startsWith("rmi://")) {
+                        addNode(endpoint);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("RMI node discovery via " + node.endpoint() + " failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.medical.dme.distributed.rmi.server;
+
+import com.medical.dme.distributed.rmi.MedicalRecordInvalidationListener;
+
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion asynchrone des invalidations aux listeners des clients.
+ * Les patients modifiés s'accumulent par listener pendant un envoi et partent
+ * ensemble au suivant ; un listener injoignable est retiré après maxFailures
+ * échecs consécutifs. Le client renouvelle son enregistrement à chaque contrôle
+ * de santé : un listener retiré revient au renouvellement suivant.
+ */
+final class InvalidationPublisher {
+
+    private final long retryMillis;
+    private final int maxFailures;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    InvalidationPublisher(long retryMillis, int maxFailures) {
+        this.retryMillis = retryMillis;
+        this.maxFailures = maxFailures;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rmi-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // false si ce listener était déjà enregistré et actif : simple renouvellement
+    boolean addListener(String listenerId, MedicalRecordInvalidationListener listener) {
+        boolean[] added = new boolean[1];
+        subscribers.compute(listenerId, (id, previous) -> {
+            if (previous != null && !previous.closed && previous.listener.equals(listener)) {
+                return previous;
+            }
+            if (previous != null) {
+                previous.closed = true;
+            }
+            added[0] = true;
+            return new Subscriber(id, listener);
+        });
+        return added[0];
+    }
+
+    boolean removeListener(String listenerId) {
+        Subscriber subscriber = subscribers.remove(listenerId);
+        if (subscriber != null) {
+            subscriber.closed = true;
+        }
+        return subscriber != null;
+    }
+
+    // À appeler une fois l'écriture visible : un client qui relit obtient la nouvelle version
+    void publish(String patientId) {
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.add(patientId);
+        }
+    }
+
+    int listenerCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public String toString() {
+        return subscribers.size() + " listener(s), sent=" + sent.get() + ", dropped=" + dropped.get();
+    }
+
+    void shutdown() {
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.closed = true;
+        }
+        subscribers.clear();
+        scheduler.shutdownNow();
+    }
+
+    private final class Subscriber {
+
+        private final String listenerId;
+        private final MedicalRecordInvalidationListener listener;
+        private Set<String> pending = new HashSet<>();
+        private boolean scheduled;
+        private int failures;
+        volatile boolean closed;
+
+        Subscriber(String listenerId, MedicalRecordInvalidationListener listener) {
+            this.listenerId = listenerId;
+            this.listener = listener;
+        }
+
+        synchronized void add(String patientId) {
+            pending.add(patientId);
+            if (!scheduled) {
+                scheduled = true;
+                scheduler.execute(this::flush);
+            }
+        }
+
+        private void flush() {
+            Set<String> batch;
+            synchronized (this) {
+                batch = pending;
+                pending = new HashSet<>();
+                if (batch.isEmpty() || closed) {
+                    scheduled = false;
+                    return;
+                }
+            }
+
+            try {
+                listener.invalidate(batch);
+                sent.addAndGet(batch.size());
+                synchronized (this) {
+                    failures = 0;
+                    if (pending.isEmpty()) {
+                        scheduled = false;
+                    } else {
+                        scheduler.execute(this::flush);
+                    }
+                }
+            } catch (Exception e) {
+                boolean gone = e instanceof NoSuchObjectException || e instanceof ConnectException;
+                synchronized (this) {
+                    pending.addAll(batch);
+                    if (gone || ++failures >= maxFailures) {
+                        dropped.incrementAndGet();
+                        subscribers.remove(listenerId, this);
+                        closed = true;
+                        scheduled = false;
+                        System.err.println("Invalidation listener " + listenerId + " removed: " + e.getMessage());
+                        return;
+                    }
+                    scheduler.schedule(this::flush, retryMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+}
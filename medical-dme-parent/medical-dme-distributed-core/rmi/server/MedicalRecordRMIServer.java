@@ -1,18 +1,41 @@
 package com.medical.dme.distributed.rmi.server;
 
 import com.medical.dme.distributed.rmi.IMedicalRecordRMIService;
+import com.medical.dme.distributed.rmi.MedicalRecordCursor;
+import com.medical.dme.distributed.rmi.MedicalRecordInvalidationListener;
+import com.medical.dme.distributed.rmi.RecordVersion;
+import com.medical.dme.distributed.rmi.server.TieredRecordCache.CachedRecord;
+import com.medical.dme.distributed.storage.SegmentRecordStore;
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.diff.MedicalRecordDelta;
+import com.medical.dme.common.diff.MedicalRecordDiff;
 import com.medical.dme.common.model.MedicalRecord;
+import com.sun.management.HotSpotDiagnosticMXBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
 
 @Component
 public class MedicalRecordRMIServer extends UnicastRemoteObject
@@ -27,9 +50,84 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
     @Value("${rmi.server.name:MedicalRecordService}")
     private String serviceName;
 
+    // Chaque écriture est persistée ici avant de rendre la main au client
+    @Value("${rmi.store.dir:records/rmi-store}")
+    private String storeDir;
+
+    @Value("${rmi.store.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${rmi.store.sync-on-write:true}")
+    private boolean syncOnWrite;
+
+    // Dossiers décodés gardés dans le tas, pesés par leur taille encodée : leur place
+    // réelle dans le tas est plusieurs fois supérieure
+    @Value("${rmi.cache.heap-max-mb:256}")
+    private int heapCacheMaxMb;
+
+    // Dossiers encodés gardés en mémoire directe après éviction du tas (0 : désactivé ;
+    // -1 : off-heap-direct-fraction de la mémoire directe maximale de la JVM)
+    @Value("${rmi.cache.off-heap-max-mb:-1}")
+    private int offHeapCacheMaxMb;
+
+    @Value("${rmi.cache.off-heap-direct-fraction:0.25}")
+    private double offHeapDirectFraction;
+
+    // Borne de pageSize pour openMedicalRecordCursor
+    @Value("${rmi.scan.max-page-size:1000}")
+    private int maxScanPageSize;
+
+    // Curseurs ouverts au plus ; au-delà, openMedicalRecordCursor est refusé
+    @Value("${rmi.scan.max-open-cursors:64}")
+    private int maxOpenCursors;
+
+    // Un curseur sans appel à nextPage pendant ce délai est fermé par le serveur
+    @Value("${rmi.scan.cursor-idle-timeout-ms:300000}")
+    private long cursorIdleTimeoutMillis;
+
+    // Nouvel essai d'envoi des invalidations à un client, retiré après max-failures échecs
+    @Value("${rmi.invalidation.retry-ms:1000}")
+    private long invalidationRetryMillis;
+
+    @Value("${rmi.invalidation.max-failures:5}")
+    private int invalidationMaxFailures;
+
+    // Répliques connues au démarrage : nodeId=rmi://host:port/service, séparés par des virgules
+    @Value("${rmi.replication.peers:}")
+    private String replicationPeers;
+
+    @Value("${rmi.replication.threads:4}")
+    private int replicationThreads;
+
+    // Patients distincts en attente par nœud
+    @Value("${rmi.replication.queue-capacity:10000}")
+    private int replicationQueueCapacity;
+
+    @Value("${rmi.replication.batch-size:100}")
+    private int replicationBatchSize;
+
+    @Value("${rmi.replication.retry-backoff-ms:100}")
+    private long retryBackoffMillis;
+
+    @Value("${rmi.replication.max-backoff-ms:30000}")
+    private long maxBackoffMillis;
+
+    // Nombre de nœuds devant avoir appliqué une écriture avant de répondre (0 : aucun)
+    @Value("${rmi.replication.write-quorum:0}")
+    private int writeQuorum;
+
+    @Value("${rmi.replication.quorum-timeout-ms:2000}")
+    private long quorumTimeoutMillis;
+
     private Registry registry;
-    private final Map<String, MedicalRecord> recordCache = new ConcurrentHashMap<>();
+    private SegmentRecordStore recordStore;
+    private MedicalRecordReplicator replicator;
+    private InvalidationPublisher invalidations;
+    private TieredRecordCache recordCache;
+    private ObjectName cacheMBeanName;
     private final Map<String, String> registeredNodes = new ConcurrentHashMap<>();
+    private final Set<RecordCursor> openCursors = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService cursorReaper;
 
     public MedicalRecordRMIServer() throws RemoteException {
         super(); // Appel au constructeur de UnicastRemoteObject
@@ -38,6 +136,25 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
     @PostConstruct
     public void start() {
         try {
+            recordStore = SegmentRecordStore.open(Paths.get(storeDir),
+                    SegmentRecordStore.segmentSizeBytes(segmentSizeMb), syncOnWrite);
+            long heapMaxBytes = heapCacheMaxMb * 1024L * 1024L;
+            long offHeapMaxBytes = offHeapCacheMaxMb >= 0
+                    ? offHeapCacheMaxMb * 1024L * 1024L
+                    : (long) (maxDirectMemory() * offHeapDirectFraction);
+            recordCache = new TieredRecordCache(heapMaxBytes, offHeapMaxBytes);
+            registerCacheMBean(heapMaxBytes, offHeapMaxBytes);
+            if (recordStore.size() > 0) {
+                System.out.println("Opened " + recordStore.size() + " stored records from " + storeDir);
+            }
+
+            invalidations = new InvalidationPublisher(invalidationRetryMillis, invalidationMaxFailures);
+            replicator = new MedicalRecordReplicator(serviceName, id -> recordCache.get(id, recordStore::getBytes),
+                    replicationThreads, replicationQueueCapacity, replicationBatchSize,
+                    retryBackoffMillis, maxBackoffMillis);
+            registerConfiguredPeers();
+            startCursorReaper();
+
             // Créer ou obtenir le registre RMI
             registry = LocateRegistry.createRegistry(registryPort);
 
@@ -50,7 +167,7 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
             // Initialiser avec des données de test
             initializeSampleData();
 
-        } catch (RemoteException e) {
+        } catch (IOException e) {
             System.err.println("Failed to start RMI server: " + e.getMessage());
             e.printStackTrace();
         }
@@ -66,7 +183,25 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
             }
 
             // Nettoyer
+            if (cacheMBeanName != null) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(cacheMBeanName);
+            }
             UnicastRemoteObject.unexportObject(this, true);
+            if (cursorReaper != null) {
+                cursorReaper.shutdownNow();
+            }
+            for (RecordCursor cursor : new ArrayList<>(openCursors)) {
+                cursor.close();
+            }
+            if (replicator != null) {
+                replicator.shutdown();
+            }
+            if (invalidations != null) {
+                invalidations.shutdown();
+            }
+            if (recordStore != null) {
+                recordStore.close();
+            }
             System.out.println("RMI Server stopped");
 
         } catch (Exception e) {
@@ -78,19 +213,25 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
     public MedicalRecord getMedicalRecord(String patientId) throws RemoteException {
         System.out.println("RMI Request received for patient: " + patientId);
 
-        MedicalRecord record = recordCache.get(patientId);
+        MedicalRecord record = recordCache.get(patientId, recordStore::getBytes);
         if (record == null) {
             throw new RemoteException("Medical record not found for patient: " + patientId);
         }
+        return record;
+    }
 
-        // Simuler un délai réseau
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+    @Override
+    public Map<String, MedicalRecord> getMedicalRecords(Collection<String> patientIds) throws RemoteException {
+        System.out.println("RMI batch request received for " + patientIds.size() + " patient(s)");
 
-        return record;
+        Map<String, MedicalRecord> records = new HashMap<>();
+        for (String patientId : patientIds) {
+            MedicalRecord record = recordCache.get(patientId, recordStore::getBytes);
+            if (record != null) {
+                records.put(patientId, record);
+            }
+        }
+        return records;
     }
 
     @Override
@@ -99,11 +240,184 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
 
         System.out.println("Syncing medical record for patient: " + patientId);
 
-        // Mettre à jour le cache
-        recordCache.put(patientId, record);
+        awaitQuorum("Record for patient " + patientId, List.of(store(record)));
+    }
+
+    @Override
+    public void syncMedicalRecords(List<MedicalRecord> records) throws RemoteException {
+        System.out.println("Syncing " + records.size() + " medical record(s)");
+
+        // Le quorum est attendu une fois pour tout le lot, les réplications partant en parallèle
+        List<ReplicationAck> acks = new ArrayList<>(records.size());
+        for (MedicalRecord record : records) {
+            acks.add(store(record));
+        }
+        awaitQuorum(records.size() + " record(s)", acks);
+    }
+
+    @Override
+    public MedicalRecordCursor openMedicalRecordCursor(int pageSize) throws RemoteException {
+        if (pageSize <= 0) {
+            throw new RemoteException("Invalid page size: " + pageSize);
+        }
+        // Chaque curseur retient la liste de tous les patients : leur nombre est borné
+        synchronized (openCursors) {
+            if (openCursors.size() >= maxOpenCursors) {
+                throw new RemoteException("Too many open cursors (" + maxOpenCursors + "), close unused ones");
+            }
+            return new RecordCursor(recordStore, Math.min(pageSize, maxScanPageSize), openCursors);
+        }
+    }
 
-        // Propager la synchronisation aux autres nœuds
-        propagateSyncToOtherNodes(patientId, record);
+    private void startCursorReaper() {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(cursorIdleTimeoutMillis);
+        long period = Math.max(1000, cursorIdleTimeoutMillis / 4);
+        cursorReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rmi-cursor-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cursorReaper.scheduleWithFixedDelay(() -> {
+            for (RecordCursor cursor : openCursors) {
+                if (cursor.idleLongerThan(timeoutNanos)) {
+                    cursor.close();
+                    System.out.println("Closed cursor idle for more than " + cursorIdleTimeoutMillis + " ms");
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private ReplicationAck store(MedicalRecord record) throws RemoteException {
+        String patientId = record.getPatient().getPatientId();
+        ReplicationAck[] ack = new ReplicationAck[1];
+        try {
+            // Persistance et mise en file sous le verrou du patient : les nœuds reçoivent les versions dans l'ordre
+            recordCache.compute(patientId, recordStore::getBytes, (id, previous) -> {
+                int size = persist(id, record);
+                ack[0] = replicator.replicate(id, previous, record, writeQuorum);
+                return new CachedRecord(record, size);
+            });
+        } catch (UncheckedIOException e) {
+            throw new RemoteException("Failed to store medical record for patient: " + patientId, e.getCause());
+        }
+        invalidations.publish(patientId);
+        return ack[0];
+    }
+
+    @Override
+    public boolean applyMedicalRecordDelta(String patientId, byte[] encodedDelta) throws RemoteException {
+        MedicalRecordDelta delta;
+        try {
+            delta = MedicalRecordDelta.decode(encodedDelta);
+        } catch (RuntimeException e) {
+            throw new RemoteException("Invalid delta for patient: " + patientId, e);
+        }
+
+        ReplicationAck[] ack = new ReplicationAck[1];
+        try {
+            recordCache.compute(patientId, recordStore::getBytes, (id, current) -> {
+                MedicalRecord updated = MedicalRecordDiff.apply(current != null ? current : new MedicalRecord(), delta);
+                int size = persist(id, updated);
+                ack[0] = replicator.replicate(id, current, updated, writeQuorum);
+                return new CachedRecord(updated, size);
+            });
+        } catch (IllegalStateException e) {
+            // Version locale différente : l'appelant doit renvoyer le dossier complet
+            System.err.println("Delta rejected for patient " + patientId + ": " + e.getMessage());
+            return false;
+        } catch (UncheckedIOException e) {
+            throw new RemoteException("Failed to store medical record for patient: " + patientId, e.getCause());
+        }
+
+        System.out.println("Delta applied for patient: " + patientId + " (" + encodedDelta.length + " bytes)");
+        invalidations.publish(patientId);
+        awaitQuorum("Record for patient " + patientId, List.of(ack[0]));
+        return true;
+    }
+
+    @Override
+    public Set<String> replicateMedicalRecords(String sourceNodeId, Map<String, byte[]> records,
+                                               Map<String, byte[]> deltas,
+                                               Map<String, RecordVersion> versions) throws RemoteException {
+        Set<String> rejected = new HashSet<>();
+        // Mises à jour plus anciennes que l'état local : la dernière écriture l'emporte
+        int[] stale = new int[1];
+        try {
+            for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+                MedicalRecord record = MedicalRecordBinaryCodec.shared().decode(entry.getValue());
+                int size = entry.getValue().length;
+                RecordVersion version = versions.get(entry.getKey());
+                boolean[] applied = new boolean[1];
+                recordCache.compute(entry.getKey(), recordStore::getBytes, (id, current) -> {
+                    if (!replicator.isNewer(id, version)) {
+                        stale[0]++;
+                        return null;
+                    }
+                    persist(id, entry.getValue());
+                    replicator.applied(id, version);
+                    applied[0] = true;
+                    return new CachedRecord(record, size);
+                });
+                if (applied[0]) {
+                    invalidations.publish(entry.getKey());
+                }
+            }
+
+            for (Map.Entry<String, byte[]> entry : deltas.entrySet()) {
+                MedicalRecordDelta delta = MedicalRecordDelta.decode(entry.getValue());
+                RecordVersion version = versions.get(entry.getKey());
+                boolean[] applied = new boolean[1];
+                try {
+                    recordCache.compute(entry.getKey(), recordStore::getBytes, (id, current) -> {
+                        if (!replicator.isNewer(id, version)) {
+                            stale[0]++;
+                            return null;
+                        }
+                        MedicalRecord updated = MedicalRecordDiff.apply(
+                                current != null ? current : new MedicalRecord(), delta);
+                        CachedRecord cached = new CachedRecord(updated, persist(id, updated));
+                        replicator.applied(id, version);
+                        applied[0] = true;
+                        return cached;
+                    });
+                    if (applied[0]) {
+                        invalidations.publish(entry.getKey());
+                    }
+                } catch (IllegalStateException e) {
+                    rejected.add(entry.getKey());
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw new RemoteException("Failed to store replicated records from node " + sourceNodeId, e.getCause());
+        }
+
+        if (!rejected.isEmpty()) {
+            System.err.println(rejected.size() + " replicated delta(s) from node " + sourceNodeId +
+                    " rejected, full records requested");
+        }
+        if (stale[0] > 0) {
+            System.out.println(stale[0] + " replicated update(s) from node " + sourceNodeId +
+                    " older than the local version, ignored");
+        }
+        return rejected;
+    }
+
+    @Override
+    public boolean addInvalidationListener(String listenerId, MedicalRecordInvalidationListener listener)
+            throws RemoteException {
+        // Appelé à chaque contrôle de santé du client : seul un nouvel enregistrement est tracé
+        boolean added = invalidations.addListener(listenerId, listener);
+        if (added) {
+            System.out.println("Invalidation listener registered: " + listenerId);
+        }
+        return added;
+    }
+
+    @Override
+    public void removeInvalidationListener(String listenerId) throws RemoteException {
+        if (invalidations.removeListener(listenerId)) {
+            System.out.println("Invalidation listener unregistered: " + listenerId);
+        }
     }
 
     @Override
@@ -114,43 +428,112 @@ public class MedicalRecordRMIServer extends UnicastRemoteObject
     @Override
     public String getNodeInfo() throws RemoteException {
         return "RMI Node - Port: " + registryPort +
-                ", Registered Records: " + recordCache.size() +
-                ", Connected Nodes: " + registeredNodes.size();
+                ", Registered Records: " + recordStore.size() +
+                ", Cache: " + recordCache +
+                ", Connected Nodes: " + registeredNodes.size() +
+                ", Open Cursors: " + openCursors.size() +
+                ", Invalidations: " + invalidations +
+                ", Replicas: " + replicator.peerCount() +
+                ", Max Replication Lag: " + replicator.maxLagMillis() + " ms" +
+                (replicator.peerCount() > 0 ? ", Replication: " + replicator.peerStats() : "");
     }
 
     @Override
     public void registerNode(String nodeId, String endpoint) throws RemoteException {
-        registeredNodes.put(nodeId, endpoint);
-        System.out.println("Node registered: " + nodeId + " at " + endpoint);
+        // Renouvellement à l'identique : la file de réplication du nœud est conservée
+        if (endpoint.equals(registeredNodes.put(nodeId, endpoint))) {
+            return;
+        }
+        boolean replica = replicator.addPeer(nodeId, endpoint);
+        System.out.println("Node registered: " + nodeId + " at " + endpoint + (replica ? " (replica)" : ""));
     }
 
     @Override
     public void unregisterNode(String nodeId) throws RemoteException {
         registeredNodes.remove(nodeId);
+        replicator.removePeer(nodeId);
         System.out.println("Node unregistered: " + nodeId);
     }
 
-    private void propagateSyncToOtherNodes(String patientId, MedicalRecord record) {
-        // Implémentation de la synchronisation multi-nœuds
-        registeredNodes.forEach((nodeId, endpoint) -> {
-            if (!nodeId.equals(this.serviceName)) {
-                try {
-                    // Se connecter au nœud distant et synchroniser
-                    syncWithRemoteNode(endpoint, patientId, record);
-                } catch (Exception e) {
-                    System.err.println("Failed to sync with node " + nodeId + ": " + e.getMessage());
+    @Override
+    public Map<String, String> getRegisteredNodes() throws RemoteException {
+        return new HashMap<>(registeredNodes);
+    }
+
+    // Renvoie la taille encodée, poids du dossier dans le cache
+    private int persist(String patientId, MedicalRecord record) {
+        byte[] encoded = MedicalRecordBinaryCodec.shared().encode(record);
+        persist(patientId, encoded);
+        return encoded.length;
+    }
+
+    private void persist(String patientId, byte[] encoded) {
+        try {
+            recordStore.put(patientId, encoded);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // L'écriture est déjà durable localement : un quorum manqué est signalé, pas annulé
+    private void awaitQuorum(String description, List<ReplicationAck> acks) throws RemoteException {
+        if (writeQuorum <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quorumTimeoutMillis);
+        try {
+            for (ReplicationAck ack : acks) {
+                if (!ack.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new RemoteException(description +
+                            " stored locally but write quorum of " + writeQuorum + " not reached within " +
+                            quorumTimeoutMillis + " ms");
                 }
             }
-        });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for replication quorum");
+        }
+    }
+
+    private void registerCacheMBean(long heapMaxBytes, long offHeapMaxBytes) {
+        try {
+            cacheMBeanName = new ObjectName("com.medical.dme:type=RecordCache,service=" + serviceName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new RecordCacheStats(recordCache, recordStore, heapMaxBytes, offHeapMaxBytes), cacheMBeanName);
+        } catch (Exception e) {
+            cacheMBeanName = null;
+            System.err.println("Unable to register record cache MBean: " + e.getMessage());
+        }
     }
 
-    private void syncWithRemoteNode(String endpoint, String patientId, MedicalRecord record) {
-        // Implémenter la synchronisation avec le nœud distant
-        // Cette méthode pourrait utiliser RMI, sockets ou HTTP
+    // -XX:MaxDirectMemorySize, ou à défaut la taille maximale du tas, valeur par défaut de la JVM
+    private static long maxDirectMemory() {
+        try {
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long configured = Long.parseLong(diagnostic.getVMOption("MaxDirectMemorySize").getValue());
+            if (configured > 0) {
+                return configured;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Unable to read MaxDirectMemorySize: " + e.getMessage());
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    private void registerConfiguredPeers() {
+        for (String peer : replicationPeers.split(",")) {
+            int separator = peer.indexOf('=');
+            if (separator > 0) {
+                String nodeId = peer.substring(0, separator).trim();
+                String endpoint = peer.substring(separator + 1).trim();
+                registeredNodes.put(nodeId, endpoint);
+                replicator.addPeer(nodeId, endpoint);
+            }
+        }
     }
 
     private void initializeSampleData() {
         // Initialiser avec des données de test
         // (Utiliser les mêmes classes que dans le module commun)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.medical.dme.distributed.rmi.server;
+
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.distributed.rmi.RecordVersion;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Réplication asynchrone vers les nœuds enregistrés, une PeerReplicator par nœud.
+ * Seuls les endpoints de la forme rmi://host:port/service sont des répliques ;
+ * les autres (clients) sont ignorés.
+ * Chaque dossier porte une {@link RecordVersion} : une mise à jour répliquée n'est
+ * appliquée que si elle est plus récente que l'état local, si bien que deux écritures
+ * concurrentes sur deux nœuds convergent vers la même. Les versions sont gardées en
+ * mémoire : après un redémarrage, le nœud accepte la première version reçue par patient.
+ */
+final class MedicalRecordReplicator {
+
+    private final String localNodeId;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long retryBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, PeerReplicator> peers = new ConcurrentHashMap<>();
+    private final Map<String, RecordVersion> versions = new ConcurrentHashMap<>();
+    // Dossier courant d'un patient, pour les resynchronisations complètes
+    private final Function<String, MedicalRecord> loader;
+
+    MedicalRecordReplicator(String localNodeId, Function<String, MedicalRecord> loader, int threads,
+                            int queueCapacity, int batchSize, long retryBackoffMillis, long maxBackoffMillis) {
+        this.localNodeId = localNodeId;
+        this.loader = loader;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "rmi-replication-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // false si l'endpoint n'est pas celui d'une réplique
+    boolean addPeer(String nodeId, String endpoint) {
+        if (nodeId.equals(localNodeId) || endpoint == null || !endpoint.startsWith("rmi://")) {
+            return false;
+        }
+        URI uri = URI.create(endpoint);
+        String service = uri.getPath() != null && uri.getPath().length() > 1 ? uri.getPath().substring(1) : localNodeId;
+        PeerReplicator peer = new PeerReplicator(nodeId, uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 1099,
+                service, localNodeId, scheduler, versions, loader, queueCapacity, batchSize,
+                retryBackoffMillis, maxBackoffMillis);
+
+        PeerReplicator previous = peers.put(nodeId, peer);
+        if (previous != null) {
+            previous.close();
+        }
+        return true;
+    }
+
+    void removePeer(String nodeId) {
+        PeerReplicator peer = peers.remove(nodeId);
+        if (peer != null) {
+            peer.close();
+        }
+    }
+
+    /**
+     * Écriture locale, sous le verrou du patient : lui donne une nouvelle version,
+     * la met en file pour chaque nœud et rend aussitôt la main.
+     * L'acquittement est terminé quand `quorum` nœuds l'ont appliquée
+     * (borné au nombre de nœuds connus).
+     */
+    ReplicationAck replicate(String patientId, MedicalRecord previous, MedicalRecord current, int quorum) {
+        RecordVersion version = RecordVersion.next(versions.get(patientId), localNodeId);
+        versions.put(patientId, version);
+        ReplicationAck ack = new ReplicationAck(Math.min(quorum, peers.size()));
+        for (PeerReplicator peer : peers.values()) {
+            peer.enqueue(patientId, previous, current, version, ack);
+        }
+        return ack;
+    }
+
+    // Mise à jour reçue d'un nœud, sous le verrou du patient : false si l'état local est plus récent
+    boolean isNewer(String patientId, RecordVersion version) {
+        return version != null && version.isNewerThan(versions.get(patientId));
+    }
+
+    // Mise à jour reçue et appliquée : l'état local prend sa version
+    void applied(String patientId, RecordVersion version) {
+        versions.put(patientId, version);
+    }
+
+    int peerCount() {
+        return peers.size();
+    }
+
+    long maxLagMillis() {
+        long max = 0;
+        for (PeerReplicator peer : peers.values()) {
+            max = Math.max(max, peer.lagMillis());
+        }
+        return max;
+    }
+
+    List<String> peerStats() {
+        List<String> stats = new ArrayList<>();
+        for (PeerReplicator peer : peers.values()) {
+            stats.add(peer.toString());
+        }
+        return stats;
+    }
+
+    void shutdown() {
+        for (PeerReplicator peer : peers.values()) {
+            peer.close();
+        }
+        peers.clear();
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
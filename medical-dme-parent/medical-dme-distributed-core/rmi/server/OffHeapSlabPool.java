@@ -0,0 +1,73 @@
+package com.medical.dme.distributed.rmi.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Mémoire directe du tier hors tas, découpée en tranches par classe de taille
+ * (puissances de deux de MIN_SLICE à MAX_SLICE). Les tranches d'une classe viennent
+ * de blocs de SLAB_SIZE alloués à la demande, jusqu'à maxBytes, et jamais rendus :
+ * un dossier rétrogradé réutilise la tranche d'un dossier évincé au lieu d'un
+ * allocateDirect que seul le ramasse-miettes libérerait.
+ * Un bloc reste attaché à sa classe : si les tailles des dossiers changent beaucoup,
+ * une classe peut manquer de tranches alors que d'autres en ont de libres.
+ * Le dossier n'est alors pas gardé hors tas, comme un dossier plus grand que MAX_SLICE.
+ */
+final class OffHeapSlabPool {
+
+    static final int SLAB_SIZE = 1024 * 1024;
+    static final int MIN_SLICE = 256;
+    static final int MAX_SLICE = 64 * 1024;
+
+    private final long maxBytes;
+
+    // Gardés par this
+    private final ArrayDeque<ByteBuffer>[] free;
+    private long allocatedBytes;
+
+    @SuppressWarnings("unchecked")
+    OffHeapSlabPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        free = new ArrayDeque[sizeClass(MAX_SLICE) + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ArrayDeque<>();
+        }
+    }
+
+    // Tranche de capacité au moins length, positionnée à 0 ; null si aucune n'est disponible
+    synchronized ByteBuffer allocate(int length) {
+        if (length > MAX_SLICE) {
+            return null;
+        }
+        int sizeClass = sizeClass(length);
+        ArrayDeque<ByteBuffer> slices = free[sizeClass];
+        if (slices.isEmpty()) {
+            if (allocatedBytes + SLAB_SIZE > maxBytes) {
+                return null;
+            }
+            ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            allocatedBytes += SLAB_SIZE;
+            int sliceSize = MIN_SLICE << sizeClass;
+            for (int offset = 0; offset < SLAB_SIZE; offset += sliceSize) {
+                slices.add(slab.slice(offset, sliceSize));
+            }
+        }
+        return slices.poll().clear();
+    }
+
+    // La tranche ne doit plus être lue par personne
+    synchronized void release(ByteBuffer slice) {
+        free[sizeClass(slice.capacity())].add(slice);
+    }
+
+    // Mémoire directe effectivement réservée, tranches libres comprises
+    synchronized long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private static int sizeClass(int length) {
+        int size = Math.max(length, MIN_SLICE);
+        // Plus petite puissance de deux >= size, en rang depuis MIN_SLICE
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SLICE);
+    }
+}
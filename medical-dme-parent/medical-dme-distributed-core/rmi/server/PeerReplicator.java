@@ -0,0 +1,298 @@
+package com.medical.dme.distributed.rmi.server;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.diff.MedicalRecordDelta;
+import com.medical.dme.common.diff.MedicalRecordDiff;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.distributed.rmi.IMedicalRecordRMIService;
+import com.medical.dme.distributed.rmi.RecordVersion;
+
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * File de réplication vers un nœud. Les mises à jour successives d'un même
+ * patient sont fusionnées tant qu'elles n'ont pas été envoyées : seul le delta
+ * entre le dernier état connu du nœud et l'état courant part, par lots.
+ * Un seul envoi à la fois par nœud ; en cas d'échec, le lot est remis en tête
+ * de file et renvoyé après un délai croissant.
+ * File pleine : le patient est marqué à resynchroniser, et son dossier courant
+ * part en entier, avec sa version, dès que la file a de la place.
+ */
+final class PeerReplicator {
+
+    private final String nodeId;
+    private final String host;
+    private final int port;
+    private final String serviceName;
+    private final String localNodeId;
+    private final ScheduledExecutorService scheduler;
+    // Versions courantes et dossiers du nœud local, lus pour les resynchronisations
+    private final Map<String, RecordVersion> versions;
+    private final Function<String, MedicalRecord> loader;
+    private final int capacity;
+    private final int batchSize;
+    private final long retryBackoffMillis;
+    private final long maxBackoffMillis;
+
+    // Ordre d'insertion : le premier élément est la plus ancienne mise à jour non envoyée
+    private final LinkedHashMap<String, PendingUpdate> queue = new LinkedHashMap<>();
+    // Patients dont une mise à jour n'a pas trouvé de place dans la file
+    private final Set<String> resync = new LinkedHashSet<>();
+    private boolean drainScheduled;
+    private volatile boolean closed;
+    private IMedicalRecordRMIService stub;
+
+    private final AtomicLong replicated = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private volatile int consecutiveFailures;
+    private volatile long lastSuccessMillis;
+
+    PeerReplicator(String nodeId, String host, int port, String serviceName, String localNodeId,
+                   ScheduledExecutorService scheduler, Map<String, RecordVersion> versions,
+                   Function<String, MedicalRecord> loader, int capacity, int batchSize,
+                   long retryBackoffMillis, long maxBackoffMillis) {
+        this.nodeId = nodeId;
+        this.host = host;
+        this.port = port;
+        this.serviceName = serviceName;
+        this.localNodeId = localNodeId;
+        this.scheduler = scheduler;
+        this.versions = versions;
+        this.loader = loader;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * previous : état du dossier avant cette mise à jour (null pour un nouveau dossier).
+     * File pleine : le patient est marqué à resynchroniser ; l'acquittement de cette
+     * mise à jour n'est pas donné par ce nœud.
+     */
+    synchronized void enqueue(String patientId, MedicalRecord previous, MedicalRecord current,
+                              RecordVersion version, ReplicationAck ack) {
+        if (closed) {
+            return;
+        }
+        PendingUpdate pending = queue.get(patientId);
+        if (pending != null) {
+            pending.latest = current;
+            pending.version = version;
+            pending.acks.add(ack);
+        } else if (queue.size() >= capacity) {
+            if (resync.add(patientId) && overflows.incrementAndGet() % 1000 == 1) {
+                System.err.println("Replication queue to node " + nodeId + " full, " + overflows.get() +
+                        " patient(s) marked for full resync");
+            }
+            return;
+        } else {
+            // Après un débordement, l'état connu du nœud est incertain : envoi complet
+            MedicalRecord base = resync.remove(patientId) ? null : previous;
+            queue.put(patientId, new PendingUpdate(base, current, version, ack));
+        }
+
+        if (!drainScheduled) {
+            drainScheduled = true;
+            scheduler.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        Map<String, PendingUpdate> batch = new LinkedHashMap<>();
+        List<String> resyncIds = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, PendingUpdate>> it = queue.entrySet().iterator();
+            while (it.hasNext() && batch.size() < batchSize) {
+                Map.Entry<String, PendingUpdate> entry = it.next();
+                batch.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+            Iterator<String> ids = resync.iterator();
+            while (ids.hasNext() && batch.size() + resyncIds.size() < batchSize
+                    && queue.size() + batch.size() + resyncIds.size() < capacity) {
+                resyncIds.add(ids.next());
+                ids.remove();
+            }
+            if ((batch.isEmpty() && resyncIds.isEmpty()) || closed) {
+                drainScheduled = false;
+                return;
+            }
+        }
+        // Hors du verrou : lire un dossier peut attendre une écriture qui met en file ici
+        loadResync(resyncIds, batch);
+        if (batch.isEmpty()) {
+            scheduleNext(0);
+            return;
+        }
+
+        try {
+            send(batch);
+            consecutiveFailures = 0;
+            lastSuccessMillis = System.currentTimeMillis();
+            replicated.addAndGet(batch.size());
+            for (PendingUpdate update : batch.values()) {
+                update.acks.forEach(ReplicationAck::ack);
+            }
+            scheduleNext(0);
+        } catch (Exception e) {
+            requeue(batch);
+            stub = null;
+            retries.incrementAndGet();
+            int failures = ++consecutiveFailures;
+            long delay = Math.min(maxBackoffMillis, retryBackoffMillis << Math.min(failures - 1, 20));
+            if (failures == 1 || failures % 10 == 0) {
+                System.err.println("Replication to node " + nodeId + " failed (" + failures +
+                        " attempt(s)), retrying in " + delay + " ms: " + e.getMessage());
+            }
+            scheduleNext(delay);
+        }
+    }
+
+    // Patients à resynchroniser, envoyés en entier dans leur état courant
+    private void loadResync(List<String> patientIds, Map<String, PendingUpdate> batch) {
+        for (String patientId : patientIds) {
+            // Version lue avant le dossier : le contenu est au moins aussi récent qu'elle
+            RecordVersion version = versions.get(patientId);
+            MedicalRecord current = version != null ? loader.apply(patientId) : null;
+            if (current != null && !batch.containsKey(patientId)) {
+                batch.put(patientId, new PendingUpdate(null, current, version, null));
+            }
+        }
+    }
+
+    private void send(Map<String, PendingUpdate> batch) throws Exception {
+        Map<String, byte[]> records = new HashMap<>();
+        Map<String, byte[]> deltas = new HashMap<>();
+        Map<String, RecordVersion> batchVersions = new HashMap<>();
+        for (Map.Entry<String, PendingUpdate> entry : batch.entrySet()) {
+            PendingUpdate update = entry.getValue();
+            batchVersions.put(entry.getKey(), update.version);
+            if (update.base == null) {
+                records.put(entry.getKey(), MedicalRecordBinaryCodec.shared().encode(update.latest));
+            } else {
+                MedicalRecordDelta delta = MedicalRecordDiff.diff(update.base, update.latest);
+                if (!delta.isEmpty()) {
+                    deltas.put(entry.getKey(), delta.encode());
+                }
+            }
+        }
+
+        IMedicalRecordRMIService service = stub();
+        Set<String> rejected = service.replicateMedicalRecords(localNodeId, records, deltas, batchVersions);
+        if (!rejected.isEmpty()) {
+            // Le nœud a divergé sur ces dossiers : renvoi complet
+            Map<String, byte[]> full = new HashMap<>();
+            for (String patientId : rejected) {
+                full.put(patientId, MedicalRecordBinaryCodec.shared().encode(batch.get(patientId).latest));
+            }
+            service.replicateMedicalRecords(localNodeId, full, new HashMap<>(), batchVersions);
+        }
+    }
+
+    // Le lot repasse devant les mises à jour arrivées pendant l'envoi, fusionné avec elles
+    private synchronized void requeue(Map<String, PendingUpdate> batch) {
+        LinkedHashMap<String, PendingUpdate> merged = new LinkedHashMap<>(batch);
+        for (Map.Entry<String, PendingUpdate> entry : queue.entrySet()) {
+            PendingUpdate older = merged.get(entry.getKey());
+            if (older != null) {
+                older.latest = entry.getValue().latest;
+                older.version = entry.getValue().version;
+                older.acks.addAll(entry.getValue().acks);
+            } else {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        queue.clear();
+        queue.putAll(merged);
+    }
+
+    private synchronized void scheduleNext(long delayMillis) {
+        if ((queue.isEmpty() && resync.isEmpty()) || closed) {
+            drainScheduled = false;
+        } else if (delayMillis > 0) {
+            scheduler.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(this::drain);
+        }
+    }
+
+    private IMedicalRecordRMIService stub() throws Exception {
+        if (stub == null) {
+            stub = (IMedicalRecordRMIService) LocateRegistry.getRegistry(host, port).lookup(serviceName);
+        }
+        return stub;
+    }
+
+    void close() {
+        closed = true;
+        synchronized (this) {
+            queue.clear();
+            resync.clear();
+        }
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    synchronized int queueSize() {
+        return queue.size();
+    }
+
+    synchronized int resyncSize() {
+        return resync.size();
+    }
+
+    // Âge de la plus ancienne mise à jour pas encore confirmée par le nœud
+    synchronized long lagMillis() {
+        if (queue.isEmpty()) {
+            return 0;
+        }
+        return System.currentTimeMillis() - queue.values().iterator().next().enqueuedAt;
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + "[rmi://" + host + ":" + port + "/" + serviceName +
+                ", queued=" + queueSize() + ", resync=" + resyncSize() + ", lag=" + lagMillis() + " ms" +
+                ", replicated=" + replicated.get() + ", retries=" + retries.get() +
+                ", overflows=" + overflows.get() + ", failures=" + consecutiveFailures +
+                (lastSuccessMillis > 0
+                        ? ", lastSuccess=" + (System.currentTimeMillis() - lastSuccessMillis) + " ms ago" : "") +
+                "]";
+    }
+
+    private static final class PendingUpdate {
+
+        // Dernier état transmis au nœud (null : envoi complet)
+        final MedicalRecord base;
+        MedicalRecord latest;
+        RecordVersion version;
+        final long enqueuedAt = System.currentTimeMillis();
+        final List<ReplicationAck> acks = new ArrayList<>(1);
+
+        // ack null pour une resynchronisation, que personne n'attend
+        PendingUpdate(MedicalRecord base, MedicalRecord latest, RecordVersion version, ReplicationAck ack) {
+            this.base = base;
+            this.latest = latest;
+            this.version = version;
+            if (ack != null) {
+                acks.add(ack);
+            }
+        }
+    }
+}
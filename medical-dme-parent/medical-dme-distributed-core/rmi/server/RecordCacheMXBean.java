@@ -0,0 +1,39 @@
+package com.medical.dme.distributed.rmi.server;
+
+// Exposé sous com.medical.dme:type=RecordCache,service=<nom du service RMI>
+public interface RecordCacheMXBean {
+
+    long getHeapRecords();
+
+    // Somme des tailles encodées : l'empreinte réelle dans le tas est plusieurs fois supérieure
+    long getHeapBytes();
+
+    long getHeapMaxBytes();
+
+    long getHeapHits();
+
+    long getHeapMisses();
+
+    long getHeapEvictions();
+
+    double getHeapHitRate();
+
+    long getOffHeapRecords();
+
+    long getOffHeapBytes();
+
+    long getOffHeapMaxBytes();
+
+    // Blocs de mémoire directe réservés, tranches libres comprises ; au plus getOffHeapMaxBytes
+    long getOffHeapAllocatedBytes();
+
+    // Absences du tas servies par le tier hors tas
+    long getOffHeapHits();
+
+    // Absences des deux tiers : lecture dans le store
+    long getOffHeapMisses();
+
+    long getOffHeapEvictions();
+
+    long getStoredRecords();
+}
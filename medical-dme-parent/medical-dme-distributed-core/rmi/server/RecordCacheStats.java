@@ -0,0 +1,94 @@
+package com.medical.dme.distributed.rmi.server;
+
+import com.medical.dme.distributed.storage.SegmentRecordStore;
+
+// Vue JMX du cache des dossiers d'un nœud RMI
+class RecordCacheStats implements RecordCacheMXBean {
+
+    private final TieredRecordCache cache;
+    private final SegmentRecordStore recordStore;
+    private final long heapMaxBytes;
+    private final long offHeapMaxBytes;
+
+    RecordCacheStats(TieredRecordCache cache, SegmentRecordStore recordStore, long heapMaxBytes, long offHeapMaxBytes) {
+        this.cache = cache;
+        this.recordStore = recordStore;
+        this.heapMaxBytes = heapMaxBytes;
+        this.offHeapMaxBytes = offHeapMaxBytes;
+    }
+
+    @Override
+    public long getHeapRecords() {
+        return cache.heapSize();
+    }
+
+    @Override
+    public long getHeapBytes() {
+        return cache.heapWeight();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        return heapMaxBytes;
+    }
+
+    @Override
+    public long getHeapHits() {
+        return cache.heapStats().hitCount();
+    }
+
+    @Override
+    public long getHeapMisses() {
+        return cache.heapStats().missCount();
+    }
+
+    @Override
+    public long getHeapEvictions() {
+        return cache.heapStats().evictionCount();
+    }
+
+    @Override
+    public double getHeapHitRate() {
+        return cache.heapStats().hitRate();
+    }
+
+    @Override
+    public long getOffHeapRecords() {
+        return cache.offHeapSize();
+    }
+
+    @Override
+    public long getOffHeapBytes() {
+        return cache.offHeapWeight();
+    }
+
+    @Override
+    public long getOffHeapMaxBytes() {
+        return offHeapMaxBytes;
+    }
+
+    @Override
+    public long getOffHeapAllocatedBytes() {
+        return cache.offHeapAllocatedBytes();
+    }
+
+    @Override
+    public long getOffHeapHits() {
+        return cache.offHeapStats().hitCount();
+    }
+
+    @Override
+    public long getOffHeapMisses() {
+        return cache.offHeapStats().missCount();
+    }
+
+    @Override
+    public long getOffHeapEvictions() {
+        return cache.offHeapStats().evictionCount();
+    }
+
+    @Override
+    public long getStoredRecords() {
+        return recordStore.size();
+    }
+}
@@ -0,0 +1,79 @@
+package com.medical.dme.distributed.rmi.server;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.distributed.rmi.MedicalRecordCursor;
+import com.medical.dme.distributed.storage.SegmentRecordStore;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Curseur exporté pour un client : liste des patients figée à l'ouverture,
+ * dossiers lus dans le store au fil des pages, sans passer par le cache
+ * (un parcours complet en chasserait les dossiers fréquemment lus).
+ * Fermé par le client, par le DGC quand le client disparaît, ou par le serveur
+ * après une inactivité prolongée : le client reçoit alors NoSuchObjectException.
+ */
+final class RecordCursor extends UnicastRemoteObject implements MedicalRecordCursor, Unreferenced {
+
+    private final SegmentRecordStore recordStore;
+    private final List<String> patientIds;
+    private final int pageSize;
+    private final Set<RecordCursor> openCursors;
+    private int position;
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    RecordCursor(SegmentRecordStore recordStore, int pageSize, Set<RecordCursor> openCursors) throws RemoteException {
+        super();
+        this.recordStore = recordStore;
+        this.patientIds = recordStore.keys();
+        this.pageSize = pageSize;
+        this.openCursors = openCursors;
+        openCursors.add(this);
+    }
+
+    @Override
+    public synchronized List<MedicalRecord> nextPage() throws RemoteException {
+        lastAccessNanos = System.nanoTime();
+        List<MedicalRecord> page = new ArrayList<>(Math.min(pageSize, patientIds.size() - position));
+        while (page.size() < pageSize && position < patientIds.size()) {
+            // Un patient supprimé depuis l'ouverture est sauté
+            byte[] encoded = recordStore.getBytes(patientIds.get(position++));
+            if (encoded != null) {
+                page.add(MedicalRecordBinaryCodec.shared().decode(encoded));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized int remaining() {
+        return patientIds.size() - position;
+    }
+
+    @Override
+    public void close() {
+        if (openCursors.remove(this)) {
+            try {
+                UnicastRemoteObject.unexportObject(this, true);
+            } catch (NoSuchObjectException e) {
+                // Déjà retiré
+            }
+        }
+    }
+
+    boolean idleLongerThan(long timeoutNanos) {
+        return System.nanoTime() - lastAccessNanos > timeoutNanos;
+    }
+
+    @Override
+    public void unreferenced() {
+        close();
+    }
+}
@@ -0,0 +1,38 @@
+package com.medical.dme.distributed.rmi.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Attente d'un quorum d'écriture : terminé quand `required` nœuds ont confirmé la mise à jour
+final class ReplicationAck {
+
+    private final AtomicInteger remaining;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    ReplicationAck(int required) {
+        remaining = new AtomicInteger(required);
+        if (required <= 0) {
+            done.complete(null);
+        }
+    }
+
+    void ack() {
+        if (remaining.decrementAndGet() == 0) {
+            done.complete(null);
+        }
+    }
+
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            done.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.medical.dme.distributed.rmi.server;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+
+import java.nio.ByteBuffer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Cache des dossiers d'un nœud RMI, borné en octets, devant le store durable :
+ * - tier 1, dans le tas : objets MedicalRecord, pesés par leur taille encodée.
+ *   Ce poids sous-estime l'empreinte réelle dans le tas (en-têtes d'objets, chaînes,
+ *   listes), de plusieurs fois pour un petit dossier : la borne du tier 1 est à
+ *   dimensionner en conséquence ;
+ * - tier 2, hors tas : dossiers encodés (codec binaire) dans des tranches de
+ *   {@link OffHeapSlabPool}, pesés par la taille de leur tranche, alimenté par les
+ *   évictions du tier 1 et relu en cas d'absence dans celui-ci.
+ * Admission et éviction W-TinyLFU (Caffeine) sur les deux tiers : un dossier lu
+ * une seule fois ne chasse pas les dossiers fréquemment consultés.
+ */
+final class TieredRecordCache {
+
+    private final Cache<String, CachedRecord> heap;
+    // null si le tier hors tas est désactivé
+    private final Cache<String, ByteBuffer> offHeap;
+    private final OffHeapSlabPool slabs;
+
+    TieredRecordCache(long heapMaxBytes, long offHeapMaxBytes) {
+        slabs = offHeapMaxBytes > 0 ? new OffHeapSlabPool(offHeapMaxBytes) : null;
+        offHeap = offHeapMaxBytes > 0
+                ? Caffeine.newBuilder()
+                        .maximumWeight(offHeapMaxBytes)
+                        .weigher((String id, ByteBuffer buffer) -> buffer.capacity())
+                        // Appelé sous le verrou de l'entrée, déjà retirée : personne ne lit plus la tranche
+                        .evictionListener((String id, ByteBuffer buffer, RemovalCause cause) -> {
+                            if (buffer != null) {
+                                slabs.release(buffer);
+                            }
+                        })
+                        .recordStats()
+                        .build()
+                : null;
+
+        heap = Caffeine.newBuilder()
+                .maximumWeight(heapMaxBytes)
+                .weigher((String id, CachedRecord cached) -> cached.weight)
+                .evictionListener((String id, CachedRecord cached, RemovalCause cause) -> {
+                    if (id != null && cached != null && cause.wasEvicted()) {
+                        demote(id, cached.record);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Dossier en cache ou chargé par loader (store) ; null s'il n'existe pas.
+     * Un dossier trouvé hors tas remonte dans le tas.
+     */
+    MedicalRecord get(String patientId, Function<String, byte[]> loader) {
+        CachedRecord cached = heap.get(patientId, id -> loadCold(id, loader));
+        return cached != null ? cached.record : null;
+    }
+
+    /**
+     * Met à jour le dossier de façon atomique pour ce patient.
+     * remapping reçoit l'état courant (null si absent) et renvoie le nouvel état
+     * avec sa taille encodée, ou null pour ne rien changer.
+     */
+    MedicalRecord compute(String patientId, Function<String, byte[]> loader,
+                          BiFunction<String, MedicalRecord, CachedRecord> remapping) {
+        CachedRecord result = heap.asMap().compute(patientId, (id, cached) -> {
+            if (cached == null) {
+                cached = loadCold(id, loader);
+            }
+            CachedRecord updated = remapping.apply(id, cached != null ? cached.record : null);
+            return updated != null ? updated : cached;
+        });
+        return result != null ? result.record : null;
+    }
+
+    private CachedRecord loadCold(String patientId, Function<String, byte[]> loader) {
+        if (offHeap != null && offHeap.getIfPresent(patientId) != null) {
+            // Un dossier n'est que dans un tier à la fois ; retiré avant lecture, la tranche n'est qu'à nous
+            ByteBuffer buffer = offHeap.asMap().remove(patientId);
+            if (buffer != null) {
+                int length = buffer.remaining();
+                MedicalRecord record = MedicalRecordBinaryCodec.shared().decode(buffer.duplicate());
+                slabs.release(buffer);
+                return new CachedRecord(record, length);
+            }
+        }
+        byte[] encoded = loader.apply(patientId);
+        return encoded != null
+                ? new CachedRecord(MedicalRecordBinaryCodec.shared().decode(encoded), encoded.length)
+                : null;
+    }
+
+    private void demote(String patientId, MedicalRecord record) {
+        if (offHeap == null) {
+            return;
+        }
+        byte[] encoded = MedicalRecordBinaryCodec.shared().encode(record);
+        ByteBuffer buffer = slabs.allocate(encoded.length);
+        if (buffer == null) {
+            // Pas de tranche pour cette taille : le dossier sera relu dans le store
+            return;
+        }
+        buffer.put(encoded).flip();
+        ByteBuffer previous = offHeap.asMap().put(patientId, buffer);
+        if (previous != null) {
+            slabs.release(previous);
+        }
+    }
+
+    long heapWeight() {
+        return heap.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    long offHeapWeight() {
+        return offHeap == null ? 0
+                : offHeap.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    // Mémoire directe réservée par le tier hors tas, tranches libres comprises
+    long offHeapAllocatedBytes() {
+        return slabs == null ? 0 : slabs.allocatedBytes();
+    }
+
+    long heapSize() {
+        return heap.estimatedSize();
+    }
+
+    long offHeapSize() {
+        return offHeap == null ? 0 : offHeap.estimatedSize();
+    }
+
+    CacheStats heapStats() {
+        return heap.stats();
+    }
+
+    CacheStats offHeapStats() {
+        return offHeap == null ? CacheStats.empty() : offHeap.stats();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats heapStats = heapStats();
+        CacheStats offHeapStats = offHeapStats();
+        return "heap[" + heapSize() + " records, " + heapWeight() / 1024 + " KB, hitRate=" +
+                String.format("%.2f", heapStats.hitRate()) + ", evictions=" + heapStats.evictionCount() + "]" +
+                ", offHeap[" + offHeapSize() + " records, " + offHeapWeight() / 1024 + " KB of " +
+                offHeapAllocatedBytes() / 1024 + " KB allocated, hits=" +
+                offHeapStats.hitCount() + ", evictions=" + offHeapStats.evictionCount() + "]";
+    }
+
+    // Dossier du tier 1 et sa taille encodée, qui sert de poids (en deçà de sa place réelle dans le tas)
+    static final class CachedRecord {
+
+        final MedicalRecord record;
+        final int weight;
+
+        CachedRecord(MedicalRecord record, int weight) {
+            this.record = record;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.medical.dme.distributed.socket;
+
+import com.medical.dme.distributed.socket.command.SendRecordCommand;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads par morceaux (SEND_BEGIN, SEND_CHUNK*, SEND_END) ; une instance par connexion.
+ * Les morceaux sont écrits dans un fichier temporaire par la file d'écriture de la
+ * connexion, dans leur ordre de réception ; à SEND_END le dossier est validé en flux
+ * depuis ce fichier puis copié dans le store, sans jamais être entièrement en mémoire.
+ * Passer par la même file que SEND_RECORD garde l'ordre des écritures de la connexion.
+ * Les octets reçus mais pas encore écrits sont bornés : au-delà, la lecture de la
+ * connexion est suspendue jusqu'à ce que le disque rattrape. De même si l'executor
+ * refuse une tâche : elle attend, dans l'ordre, d'être resoumise toutes les
+ * RETRY_DELAY_MILLIS, lecture suspendue ; la boucle n'écrit jamais de morceau.
+ * Si l'executor est arrêté, ou n'accepte aucune tâche pendant MAX_DEFER_MILLIS, les uploads
+ * concernés échouent : leurs tâches en attente s'exécutent sur la boucle sans rien
+ * écrire, pour libérer morceaux et fichiers, et SEND_END reçoit une erreur.
+ * Une connexion muette pendant un upload est fermée au premier READER_IDLE.
+ * Les autres trames passent au handler suivant.
+ */
+class ChunkedUploadHandler extends ChannelInboundHandlerAdapter {
+
+    static final long RETRY_DELAY_MILLIS = 10;
+    static final long MAX_DEFER_MILLIS = 5_000;
+
+    private static final LogRateLimiter STORED_LOG = new LogRateLimiter(1, TimeUnit.SECONDS);
+
+    private final SendRecordCommand sendRecord;
+    private final SocketCommandExecutor commandExecutor;
+    private final SocketFlowControl flowControl;
+    private final SocketMetrics metrics;
+    private final Path uploadDir;
+    private final long maxUploadSize;
+    private final long maxPendingBytes;
+
+    // Accédés uniquement depuis la boucle d'événements de la connexion
+    private final Map<Integer, Upload> uploads = new HashMap<>();
+    private long pendingBytes;
+    private boolean readSuspended;
+    // Tâches refusées par l'executor saturé, à resoumettre avant toute autre
+    private final Queue<DeferredTask> deferred = new ArrayDeque<>();
+    private long deferredSinceNanos;
+
+    ChunkedUploadHandler(SendRecordCommand sendRecord, SocketCommandExecutor commandExecutor,
+                         SocketFlowControl flowControl, SocketMetrics metrics, Path uploadDir,
+                         long maxUploadSize, long maxPendingBytes) {
+        this.sendRecord = sendRecord;
+        this.commandExecutor = commandExecutor;
+        this.flowControl = flowControl;
+        this.metrics = metrics;
+        this.uploadDir = uploadDir;
+        this.maxUploadSize = maxUploadSize;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        SocketOpcode opcode = msg instanceof SocketFrame ? ((SocketFrame) msg).opcode() : null;
+        if (opcode == SocketOpcode.SEND_BEGIN) {
+            begin(ctx, (SocketFrame) msg);
+        } else if (opcode == SocketOpcode.SEND_CHUNK) {
+            chunk(ctx, (SocketFrame) msg);
+        } else if (opcode == SocketOpcode.SEND_END) {
+            end(ctx, (SocketFrame) msg);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void begin(ChannelHandlerContext ctx, SocketFrame frame) {
+        int requestId = frame.requestId();
+        ByteBuf content = frame.content();
+        long declaredSize = content.readableBytes() >= 8 ? content.getLong(content.readerIndex()) : -1;
+        int flags = frame.flags();
+        frame.release();
+
+        if (uploads.containsKey(requestId)) {
+            ctx.writeAndFlush(SocketFrame.error(requestId, "Upload " + requestId + " already in progress"));
+            return;
+        }
+
+        // Un refus est rendu à SEND_END : les morceaux déjà en route sont ignorés d'ici là
+        Upload upload = new Upload(requestId, flags, flowControl.tryAcquire(ctx.channel()));
+        if (!upload.acquired) {
+            upload.failure = "Too many requests in flight";
+        } else if (declaredSize > maxUploadSize) {
+            upload.failure = "Record too large: " + declaredSize + " bytes (max " + maxUploadSize + ")";
+        } else {
+            upload.then(ctx.channel(), upload::open);
+        }
+        uploads.put(requestId, upload);
+    }
+
+    private void chunk(ChannelHandlerContext ctx, SocketFrame frame) {
+        Upload upload = uploads.get(frame.requestId());
+        if (upload == null) {
+            frame.release();
+            ctx.writeAndFlush(SocketFrame.error(frame.requestId(), "No upload in progress"));
+            return;
+        }
+
+        int length = frame.content().readableBytes();
+        upload.received += length;
+        if (upload.received > maxUploadSize && upload.failure == null) {
+            upload.failure = "Record exceeds max upload size of " + maxUploadSize + " bytes";
+        }
+        if (upload.failure != null) {
+            frame.release();
+            return;
+        }
+
+        pendingBytes += length;
+        accountPending(ctx.channel());
+        if (!readSuspended && pendingBytes > maxPendingBytes) {
+            readSuspended = true;
+            ctx.channel().config().setAutoRead(false);
+        }
+
+        Channel channel = ctx.channel();
+        upload.then(channel, () -> {
+            try {
+                upload.write(frame.content());
+            } finally {
+                frame.release();
+                channel.eventLoop().execute(() -> written(channel, length));
+            }
+        });
+    }
+
+    private void written(Channel channel, int length) {
+        pendingBytes -= length;
+        accountPending(channel);
+        if (readSuspended && pendingBytes <= maxPendingBytes / 2) {
+            readSuspended = false;
+            resumeRead(channel);
+        }
+    }
+
+    // Appelé depuis la boucle uniquement ; les tâches gardent leur ordre de soumission
+    private void submit(Channel channel, Upload upload, Runnable task) {
+        if (deferred.isEmpty()) {
+            try {
+                SerialExecutor.writeLane(channel, commandExecutor).execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Executor saturé : la connexion attend, sans écriture disque sur la boucle
+                channel.config().setAutoRead(false);
+                deferredSinceNanos = System.nanoTime();
+                scheduleRetry(channel);
+            }
+        }
+        deferred.add(new DeferredTask(upload, task));
+    }
+
+    private void retryDeferred(Channel channel) {
+        if (commandExecutor.isShutdown()) {
+            abandonDeferred(channel, "Server shutting down");
+            return;
+        }
+        DeferredTask deferredTask;
+        while ((deferredTask = deferred.peek()) != null) {
+            try {
+                SerialExecutor.writeLane(channel, commandExecutor).execute(deferredTask.task());
+            } catch (RejectedExecutionException e) {
+                if (System.nanoTime() - deferredSinceNanos >= TimeUnit.MILLISECONDS.toNanos(MAX_DEFER_MILLIS)) {
+                    abandonDeferred(channel, "Command queue full");
+                } else {
+                    scheduleRetry(channel);
+                }
+                return;
+            }
+            deferred.poll();
+            deferredSinceNanos = System.nanoTime();
+        }
+        resumeRead(channel);
+    }
+
+    // Fait échouer les uploads en attente ; leurs tâches, sans rien écrire, libèrent morceaux et
+    // fichiers et, pour un SEND_END reçu, envoient l'erreur
+    private void abandonDeferred(Channel channel, String reason) {
+        for (DeferredTask deferredTask : deferred) {
+            if (deferredTask.upload().failure == null) {
+                deferredTask.upload().failure = reason;
+            }
+        }
+        DeferredTask deferredTask;
+        while ((deferredTask = deferred.poll()) != null) {
+            deferredTask.task().run();
+        }
+        resumeRead(channel);
+    }
+
+    private void scheduleRetry(Channel channel) {
+        channel.eventLoop().schedule(() -> retryDeferred(channel), RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void resumeRead(Channel channel) {
+        // Ne pas relancer la lecture si le tampon de sortie est lui-même plein
+        if (!readSuspended && deferred.isEmpty()) {
+            channel.config().setAutoRead(channel.isWritable());
+        }
+    }
+
+    private void end(ChannelHandlerContext ctx, SocketFrame frame) {
+        int requestId = frame.requestId();
+        frame.release();
+
+        Upload upload = uploads.remove(requestId);
+        if (upload == null) {
+            ctx.writeAndFlush(SocketFrame.error(requestId, "No upload in progress"));
+            return;
+        }
+
+        Channel channel = ctx.channel();
+        upload.then(channel, () -> {
+            SocketFrame response = upload.finish();
+            SocketOpcode status = response.opcode();
+            // Latence mesurée de SEND_BEGIN à l'écriture de la réponse, sous l'opcode SEND_END
+            channel.eventLoop().execute(() -> ctx.writeAndFlush(response).addListener(future -> {
+                if (upload.acquired) {
+                    flowControl.release(channel);
+                }
+                metrics.recordCommand(SocketOpcode.SEND_END, requestId, channel, upload.startNanos,
+                        future.isSuccess() ? status : null);
+            }));
+        });
+    }
+
+    private void accountPending(Channel channel) {
+        SocketConnection connection = SocketConnection.of(channel);
+        if (connection != null) {
+            connection.uploadPendingBytes(pendingBytes);
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        // Upload abandonné : ses requêtes en cours empêcheraient SocketIdleHandler de fermer
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE
+                && !uploads.isEmpty()) {
+            int stalled = uploads.size();
+            SocketIdleHandler.CLOSE_LOG.log(System.out, () -> "Closing connection " + ctx.channel().remoteAddress() +
+                    " with " + stalled + " stalled upload(s)");
+            metrics.idleConnectionClosed();
+            ctx.close();
+            return;
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        ctx.fireChannelWritabilityChanged();
+        // MedicalSocketHandler vient de recaler autoRead sur l'état du tampon de sortie
+        if (readSuspended || !deferred.isEmpty()) {
+            ctx.channel().config().setAutoRead(false);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        for (Upload upload : uploads.values()) {
+            upload.then(channel, () -> {
+                upload.discard();
+                if (upload.acquired) {
+                    flowControl.release(channel);
+                }
+            });
+        }
+        uploads.clear();
+        ctx.fireChannelInactive();
+    }
+
+    private record DeferredTask(Upload upload, Runnable task) {
+    }
+
+    /**
+     * Un upload en cours. Ses tâches passent par la file d'écriture de la
+     * connexion, donc exécutées une à une et dans l'ordre, sans bloquer la boucle.
+     */
+    private final class Upload {
+
+        final int requestId;
+        final int flags;
+        final boolean acquired;
+        final long startNanos = System.nanoTime();
+        // Compté sur la boucle, avant écriture
+        long received;
+        // Posé par la boucle ou par une tâche d'écriture
+        volatile String failure;
+
+        private Path file;
+        private FileChannel channel;
+        private long written;
+
+        Upload(int requestId, int flags, boolean acquired) {
+            this.requestId = requestId;
+            this.flags = flags;
+            this.acquired = acquired;
+        }
+
+        // Appelé depuis la boucle uniquement
+        void then(Channel connection, Runnable task) {
+            submit(connection, this, () -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    failure = e.getMessage();
+                }
+            });
+        }
+
+        void open() {
+            if (failure != null) {
+                return;
+            }
+            try {
+                file = Files.createTempFile(uploadDir, "upload-", ".part");
+                channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                failure = "Unable to create upload file: " + e.getMessage();
+            }
+        }
+
+        void write(ByteBuf content) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                // Buffer direct : écriture sans copie dans le tas
+                int index = content.readerIndex();
+                int remaining = content.readableBytes();
+                while (remaining > 0) {
+                    int n = content.getBytes(index, channel, written, remaining);
+                    index += n;
+                    written += n;
+                    remaining -= n;
+                }
+            } catch (IOException e) {
+                failure = "Unable to write upload file: " + e.getMessage();
+            }
+        }
+
+        SocketFrame finish() {
+            try {
+                closeChannel();
+                if (!acquired) {
+                    return SocketFrame.busy(requestId, failure);
+                }
+                if (failure != null) {
+                    return SocketFrame.error(requestId, failure);
+                }
+                String patientId = sendRecord.store(file, (flags & SocketProtocol.FLAG_BINARY_CODEC) != 0);
+                long size = written;
+                STORED_LOG.log(System.out, () -> "Chunked upload of " + size + " bytes stored for patient " + patientId);
+                return SocketFrame.success(requestId, "Record stored for patient " + patientId);
+            } catch (Exception e) {
+                return SocketFrame.error(requestId, e.getMessage());
+            } finally {
+                deleteFile();
+            }
+        }
+
+        void discard() {
+            closeChannel();
+            deleteFile();
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing upload file " + file + ": " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+
+        private void deleteFile() {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.err.println("Unable to delete upload file " + file + ": " + e.getMessage());
+                }
+                file = null;
+            }
+        }
+    }
+}
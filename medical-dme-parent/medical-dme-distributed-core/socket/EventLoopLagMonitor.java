@@ -0,0 +1,69 @@
+package com.medical.dme.distributed.socket;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mesure le retard des boucles d'événements : une sonde est planifiée sur
+ * chaque boucle à intervalle fixe, et l'écart entre l'heure prévue et l'heure
+ * effective d'exécution donne le temps passé par la boucle sur d'autres tâches.
+ * Au-delà du seuil, une ligne par seconde au plus est tracée pour tout le groupe.
+ */
+public final class EventLoopLagMonitor {
+
+    private final EventLoopGroup group;
+    private final long intervalNanos;
+    private final long warnThresholdNanos;
+
+    private final AtomicLong lastLagNanos = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final LogRateLimiter lagLog = new LogRateLimiter(1, TimeUnit.SECONDS);
+    private volatile boolean running;
+
+    public EventLoopLagMonitor(EventLoopGroup group, long interval, long warnThreshold, TimeUnit unit) {
+        this.group = group;
+        this.intervalNanos = unit.toNanos(interval);
+        this.warnThresholdNanos = unit.toNanos(warnThreshold);
+    }
+
+    public void start() {
+        running = true;
+        for (EventExecutor loop : group) {
+            schedule(loop);
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    private void schedule(EventExecutor loop) {
+        if (!running || loop.isShuttingDown()) {
+            return;
+        }
+        long expected = System.nanoTime() + intervalNanos;
+        loop.schedule(() -> {
+            long lag = Math.max(0, System.nanoTime() - expected);
+            lastLagNanos.set(lag);
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            if (lag > warnThresholdNanos) {
+                String loopName = Thread.currentThread().getName();
+                lagLog.log(System.err, () -> "Event loop " + loopName + " lagging by " +
+                        TimeUnit.NANOSECONDS.toMillis(lag) + " ms");
+            }
+            schedule(loop);
+        }, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get());
+    }
+
+    // Maximum observé depuis le dernier appel
+    public long getMaxLagMillisAndReset() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.getAndSet(0));
+    }
+}
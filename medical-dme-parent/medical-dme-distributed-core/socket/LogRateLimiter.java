@@ -0,0 +1,34 @@
+package com.medical.dme.distributed.socket;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Trace console d'un chemin chaud limitée à une ligne par intervalle, quel que
+ * soit le nombre de threads ; les lignes écartées entre-temps sont comptées et
+ * signalées avec la suivante. Le message n'est construit que s'il est tracé.
+ */
+final class LogRateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLong nextNanos = new AtomicLong(System.nanoTime());
+    private final LongAdder suppressed = new LongAdder();
+
+    LogRateLimiter(long interval, TimeUnit unit) {
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    void log(PrintStream out, Supplier<String> message) {
+        long now = System.nanoTime();
+        long next = nextNanos.get();
+        if (now - next < 0 || !nextNanos.compareAndSet(next, now + intervalNanos)) {
+            suppressed.increment();
+            return;
+        }
+        long skipped = suppressed.sumThenReset();
+        out.println(skipped > 0 ? message.get() + " (" + skipped + " similar messages suppressed)" : message.get());
+    }
+}
@@ -0,0 +1,187 @@
+package com.medical.dme.distributed.socket;
+
+import com.medical.dme.distributed.socket.command.SocketCommandHandler;
+import com.medical.dme.distributed.socket.command.SocketResponder;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import com.medical.dme.distributed.socket.protocol.SocketResponse;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DecoderException;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Aiguillage des trames vers le handler de leur opcode ; partagé entre connexions.
+ * Les commandes (lectures de segments, JAXB) s'exécutent sur l'executor, jamais
+ * sur la boucle d'événements : plusieurs lectures d'une même connexion sont
+ * traitées en parallèle et leurs réponses partent dans l'ordre où elles se
+ * terminent, corrélées par requestId. Les écritures d'une connexion passent par
+ * sa file d'écriture ({@link SerialExecutor}) : deux SEND_RECORD pipelinés pour
+ * un même patient sont appliqués dans l'ordre d'envoi.
+ * Au-delà des limites de {@link SocketFlowControl}, la requête reçoit BUSY ;
+ * tant que le tampon de sortie dépasse son seuil haut, la lecture est suspendue.
+ * Chaque requête est mesurée dans {@link SocketMetrics} quand sa réponse finale est écrite.
+ */
+@ChannelHandler.Sharable
+class MedicalSocketHandler extends SimpleChannelInboundHandler<SocketFrame> {
+
+    private final Map<SocketOpcode, SocketCommandHandler> commands = new EnumMap<>(SocketOpcode.class);
+    private final SocketCommandExecutor commandExecutor;
+    private final SocketFlowControl flowControl;
+    private final SocketMetrics metrics;
+
+    MedicalSocketHandler(Collection<? extends SocketCommandHandler> handlers, SocketCommandExecutor commandExecutor,
+                         SocketFlowControl flowControl, SocketMetrics metrics) {
+        // La trame est libérée par la tâche, pas au retour de channelRead0
+        super(false);
+        for (SocketCommandHandler handler : handlers) {
+            commands.put(handler.opcode(), handler);
+        }
+        this.commandExecutor = commandExecutor;
+        this.flowControl = flowControl;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, SocketFrame request) {
+        long startNanos = System.nanoTime();
+
+        if (!flowControl.tryAcquire(ctx.channel())) {
+            metrics.recordCommand(request.opcode(), request.requestId(), ctx.channel(), startNanos, SocketOpcode.BUSY);
+            request.release();
+            ctx.writeAndFlush(SocketFrame.busy(request.requestId(), "Too many requests in flight"));
+            return;
+        }
+
+        SocketOpcode opcode = request.opcode();
+        SocketCommandHandler command = opcode != null ? commands.get(opcode) : null;
+        Executor executor = command != null && command.isWrite()
+                ? SerialExecutor.writeLane(ctx.channel(), commandExecutor)
+                : commandExecutor;
+
+        ChannelResponder responder = new ChannelResponder(ctx, opcode, request.requestId(), startNanos);
+        try {
+            executor.execute(() -> {
+                try {
+                    dispatch(request, command, responder);
+                } finally {
+                    request.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            request.release();
+            responder.complete(commandExecutor.isShutdown()
+                    ? SocketFrame.error(request.requestId(), "Server is shutting down")
+                    : SocketFrame.busy(request.requestId(), "Command queue full"));
+        }
+    }
+
+    private void dispatch(SocketFrame request, SocketCommandHandler command, SocketResponder responder) {
+        if (request.version() != SocketProtocol.VERSION) {
+            responder.complete(SocketFrame.error(request.requestId(),
+                    "Unsupported protocol version: " + request.version()));
+        } else if (command == null) {
+            responder.complete(SocketFrame.error(request.requestId(),
+                    "Unknown opcode: 0x" + Integer.toHexString(request.opcodeCode())));
+        } else {
+            try {
+                command.handle(request, responder);
+            } catch (Exception e) {
+                responder.complete(SocketFrame.error(request.requestId(), e.getMessage()));
+            }
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // Client lent : ne plus lire de requêtes tant que ses réponses ne sont pas parties
+        Channel channel = ctx.channel();
+        channel.config().setAutoRead(channel.isWritable());
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof DecoderException) {
+            metrics.decodeError();
+            // Flux désynchronisé : répondre puis fermer, la trame suivante serait illisible
+            ctx.writeAndFlush(SocketFrame.error(0, "Malformed frame: " + cause.getMessage()))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        cause.printStackTrace();
+        ctx.close();
+    }
+
+    /**
+     * Écritures sur la boucle de la connexion, chacune avec son flush.
+     * La requête cesse d'être comptée quand sa réponse finale est écrite ;
+     * les permis pris pour des éléments de lot sont rendus par la commande.
+     */
+    private final class ChannelResponder implements SocketResponder {
+
+        private final ChannelHandlerContext ctx;
+        private final SocketOpcode opcode;
+        private final int requestId;
+        private final long startNanos;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        ChannelResponder(ChannelHandlerContext ctx, SocketOpcode opcode, int requestId, long startNanos) {
+            this.ctx = ctx;
+            this.opcode = opcode;
+            this.requestId = requestId;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void send(SocketResponse response, Consumer<Boolean> onWritten) {
+            onEventLoop(() -> ctx.writeAndFlush(response)
+                    .addListener(future -> onWritten.accept(future.isSuccess())));
+        }
+
+        @Override
+        public void complete(SocketResponse response) {
+            if (!completed.compareAndSet(false, true)) {
+                response.release();
+                return;
+            }
+            Channel channel = ctx.channel();
+            SocketOpcode status = response.opcode();
+            onEventLoop(() -> ctx.writeAndFlush(response).addListener(future -> {
+                flowControl.release(channel);
+                metrics.recordCommand(opcode, requestId, channel, startNanos, future.isSuccess() ? status : null);
+            }));
+        }
+
+        @Override
+        public boolean tryAcquirePermit() {
+            return flowControl.tryAcquireItem(ctx.channel());
+        }
+
+        @Override
+        public void releasePermit() {
+            flowControl.release(ctx.channel());
+        }
+
+        private void onEventLoop(Runnable write) {
+            EventLoop loop = ctx.channel().eventLoop();
+            if (loop.inEventLoop()) {
+                write.run();
+            } else {
+                loop.execute(write);
+            }
+        }
+    }
+}
@@ -1,22 +1,46 @@
 package com.medical.dme.distributed.socket;
 
-import com.medical.dme.common.model.MedicalRecord;
 import com.medical.dme.common.xml.MedicalRecordXMLProcessor;
+import com.medical.dme.distributed.socket.command.GetRecordCommand;
+import com.medical.dme.distributed.socket.command.MGetRecordCommand;
+import com.medical.dme.distributed.socket.command.MSendRecordCommand;
+import com.medical.dme.distributed.socket.command.SendRecordCommand;
+import com.medical.dme.distributed.socket.protocol.SocketFileFrameEncoder;
+import com.medical.dme.distributed.socket.protocol.SocketFrameDecoder;
+import com.medical.dme.distributed.socket.protocol.SocketFrameEncoder;
+import com.medical.dme.distributed.storage.SegmentRecordStore;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class MedicalSocketServer {
@@ -24,33 +48,183 @@ public class MedicalSocketServer {
     @Value("${socket.server.port:8888}")
     private int port;
 
+    @Value("${socket.store.dir:records/store}")
+    private String storeDir;
+
+    @Value("${socket.store.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${socket.store.sync-on-write:false}")
+    private boolean syncOnWrite;
+
+    @Value("${socket.store.compaction-interval-minutes:10}")
+    private long compactionIntervalMinutes;
+
+    // Voir RecordStoreFormat
+    @Value("${socket.store.format:xml}")
+    private String storeFormat;
+
+    @Value("${socket.store.legacy-dir:records}")
+    private String legacyDir;
+
+    @Value("${socket.protocol.max-frame-size-mb:16}")
+    private int maxFrameSizeMb;
+
+    // auto (epoll si disponible, sinon nio), epoll ou nio
+    @Value("${socket.server.transport:auto}")
+    private String transportName;
+
+    // 0 : valeur par défaut de Netty (deux threads par cœur)
+    @Value("${socket.server.io-threads:0}")
+    private int ioThreads;
+
+    // pooled-direct, pooled-heap ou unpooled
+    @Value("${socket.server.allocator:pooled-direct}")
+    private String allocatorName;
+
+    @Value("${socket.server.backlog:1024}")
+    private int backlog;
+
+    // Sans requête du client pendant ce délai, la connexion est fermée (0 : jamais)
+    @Value("${socket.server.reader-idle-seconds:300}")
+    private int readerIdleSeconds;
+
+    // Sortie bloquée (client qui ne lit plus) pendant ce délai : fermeture (0 : jamais)
+    @Value("${socket.server.writer-idle-seconds:60}")
+    private int writerIdleSeconds;
+
+    @Value("${socket.server.tcp-no-delay:true}")
+    private boolean tcpNoDelay;
+
+    @Value("${socket.server.write-buffer-low-water-mark-kb:32}")
+    private int writeBufferLowWaterMarkKb;
+
+    @Value("${socket.server.write-buffer-high-water-mark-kb:64}")
+    private int writeBufferHighWaterMarkKb;
+
+    // Au-delà, la requête reçoit BUSY sans être exécutée
+    @Value("${socket.server.max-in-flight-per-connection:256}")
+    private int maxInFlightPerConnection;
+
+    @Value("${socket.server.max-in-flight:10000}")
+    private int maxInFlight;
+
+    // Dossiers plus gros envoyés par sendfile depuis le segment (0 : toujours)
+    @Value("${socket.get.file-region-threshold-kb:32}")
+    private int fileRegionThresholdKb;
+
+    // Upload par morceaux (SEND_BEGIN/CHUNK/END) : taille maximale d'un dossier
+    @Value("${socket.upload.max-size-mb:512}")
+    private int uploadMaxSizeMb;
+
+    // Octets reçus pas encore écrits sur disque, par connexion, avant suspension de la lecture
+    @Value("${socket.upload.max-pending-kb:1024}")
+    private int uploadMaxPendingKb;
+
+    @Value("${socket.server.ssl.enabled:false}")
+    private boolean sslEnabled;
+
+    @Value("${socket.server.ssl.cert-chain-file:}")
+    private String sslCertChainFile;
+
+    @Value("${socket.server.ssl.private-key-file:}")
+    private String sslPrivateKeyFile;
+
+    // Threads virtuels si la JVM les fournit (Java 21+), sinon pool borné ci-dessous
+    @Value("${socket.server.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    // 0 : deux threads par cœur
+    @Value("${socket.server.command-threads:0}")
+    private int commandThreads;
+
+    @Value("${socket.server.command-queue-capacity:10000}")
+    private int commandQueueCapacity;
+
+    @Value("${socket.server.event-loop-lag-warn-ms:200}")
+    private long eventLoopLagWarnMs;
+
+    private SegmentRecordStore recordStore;
+    private SslContext sslContext;
+    // Une requête sur N tracée sur la console (0 : aucune)
+    @Value("${socket.metrics.log-sample-rate:1000}")
+    private int logSampleRate;
+
+    private SocketTransport transport;
+    private RecordStoreFormat format;
+    private SendRecordCommand sendRecord;
+    private Path uploadDir;
+    private MedicalSocketHandler socketHandler;
+    private SocketCommandExecutor commandExecutor;
+    private SocketFlowControl flowControl;
+    private SocketMetrics metrics;
+    private SocketTrafficHandler trafficHandler;
+    private SocketIdleHandler idleHandler;
+    private ObjectName mbeanName;
+    private EventLoopLagMonitor lagMonitor;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
     private Channel channel;
 
     @PostConstruct
     public void start() throws Exception {
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
+        // Ouvrir le store et reconstruire l'index depuis les segments
+        recordStore = SegmentRecordStore.open(Paths.get(storeDir),
+                SegmentRecordStore.segmentSizeBytes(segmentSizeMb), syncOnWrite);
+        recordStore.scheduleCompaction(compactionIntervalMinutes, TimeUnit.MINUTES);
+        format = RecordStoreFormat.fromProperty(storeFormat);
+        importLegacyRecords();
+        uploadDir = prepareUploadDir();
+
+        int threads = commandThreads > 0 ? commandThreads : Runtime.getRuntime().availableProcessors() * 2;
+        commandExecutor = SocketCommandExecutor.create(virtualThreads, threads, commandQueueCapacity);
+        flowControl = new SocketFlowControl(maxInFlightPerConnection, maxInFlight);
+        metrics = new SocketMetrics(logSampleRate);
+        trafficHandler = new SocketTrafficHandler(metrics);
+        idleHandler = new SocketIdleHandler(flowControl, metrics);
+        GetRecordCommand getRecord = new GetRecordCommand(recordStore, fileRegionThresholdKb * 1024);
+        sendRecord = new SendRecordCommand(recordStore, format);
+        socketHandler = new MedicalSocketHandler(List.of(
+                getRecord,
+                sendRecord,
+                new MGetRecordCommand(getRecord, commandExecutor),
+                new MSendRecordCommand(sendRecord, commandExecutor)), commandExecutor, flowControl, metrics);
+
+        if (sslEnabled) {
+            sslContext = SslContextBuilder.forServer(new File(sslCertChainFile), new File(sslPrivateKeyFile)).build();
+        }
+
+        transport = SocketTransport.select(transportName);
+        ByteBufAllocator allocator = createAllocator();
+        bossGroup = transport.newEventLoopGroup(1, "socket-boss");
+        workerGroup = transport.newEventLoopGroup(ioThreads, "socket-io");
 
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.serverChannelClass())
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline p = ch.pipeline();
-                            p.addLast(new StringDecoder(CharsetUtil.UTF_8));
-                            p.addLast(new StringEncoder(CharsetUtil.UTF_8));
-                            p.addLast(new MedicalSocketHandler());
+                            initPipeline(ch.pipeline());
                         }
                     })
-                    .option(ChannelOption.SO_BACKLOG, 128)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+                    .option(ChannelOption.SO_BACKLOG, backlog)
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .option(ChannelOption.ALLOCATOR, allocator)
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
+                    .childOption(ChannelOption.ALLOCATOR, allocator)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                            writeBufferLowWaterMarkKb * 1024, writeBufferHighWaterMarkKb * 1024));
 
             channel = b.bind(port).sync().channel();
-            System.out.println("Socket Server started on port " + port);
+            System.out.println("Socket Server started on port " + port + " (" + transport + " transport, " +
+                    allocatorName + " allocator, " + commandExecutor + ")");
+
+            lagMonitor = new EventLoopLagMonitor(workerGroup, 100, eventLoopLagWarnMs, TimeUnit.MILLISECONDS);
+            lagMonitor.start();
+            registerMBean();
 
         } catch (Exception e) {
             workerGroup.shutdownGracefully();
@@ -59,8 +233,87 @@ public class MedicalSocketServer {
         }
     }
 
+    private void initPipeline(ChannelPipeline p) {
+        p.addLast(trafficHandler);
+        if (readerIdleSeconds > 0 || writerIdleSeconds > 0) {
+            // observeOutput : une écriture lente mais qui progresse n'est pas une inactivité
+            p.addLast(new IdleStateHandler(true, readerIdleSeconds, writerIdleSeconds, 0, TimeUnit.SECONDS));
+        }
+        if (sslContext != null) {
+            // Les FileRegion ne traversent pas TLS : envoi par morceaux chiffrés
+            p.addLast(sslContext.newHandler(p.channel().alloc()));
+            p.addLast(new ChunkedWriteHandler());
+        }
+        p.addLast(new SocketFrameDecoder(maxFrameSizeMb * 1024 * 1024));
+        p.addLast(SocketFrameEncoder.INSTANCE);
+        p.addLast(SocketFileFrameEncoder.INSTANCE);
+        p.addLast(new ChunkedUploadHandler(sendRecord, commandExecutor,
+                flowControl, metrics, uploadDir, uploadMaxSizeMb * 1024L * 1024L, uploadMaxPendingKb * 1024L));
+        p.addLast(socketHandler);
+        p.addLast(idleHandler);
+    }
+
+    private ByteBufAllocator createAllocator() {
+        switch (allocatorName.toLowerCase()) {
+            case "pooled-direct":
+                return new PooledByteBufAllocator(true);
+            case "pooled-heap":
+                return new PooledByteBufAllocator(false);
+            case "unpooled":
+                return UnpooledByteBufAllocator.DEFAULT;
+            default:
+                throw new IllegalArgumentException("Unknown socket allocator: " + allocatorName);
+        }
+    }
+
+    public SocketTransport getTransport() {
+        return transport;
+    }
+
+    public SocketFlowControl getFlowControl() {
+        return flowControl;
+    }
+
+    public SocketCommandExecutor getCommandExecutor() {
+        return commandExecutor;
+    }
+
+    public SocketMetrics getMetrics() {
+        return metrics;
+    }
+
+    public EventLoopLagMonitor getEventLoopLagMonitor() {
+        return lagMonitor;
+    }
+
+    // Port effectivement lié (utile avec socket.server.port=0)
+    public int getBoundPort() {
+        return ((InetSocketAddress) channel.localAddress()).getPort();
+    }
+
+    private void registerMBean() {
+        try {
+            mbeanName = new ObjectName("com.medical.dme:type=SocketServer,port=" + getBoundPort());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new SocketServerStats(transport, metrics, flowControl, commandExecutor, lagMonitor), mbeanName);
+        } catch (Exception e) {
+            mbeanName = null;
+            System.err.println("Unable to register socket server MBean: " + e.getMessage());
+        }
+    }
+
     @PreDestroy
     public void stop() {
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                System.err.println("Unable to unregister socket server MBean: " + e.getMessage());
+            }
+        }
+        if (lagMonitor != null) {
+            lagMonitor.stop();
+        }
         if (channel != null) {
             channel.close();
         }
@@ -70,77 +323,111 @@ public class MedicalSocketServer {
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
         }
-        System.out.println("Socket Server stopped");
-    }
-
-    private class MedicalSocketHandler extends SimpleChannelInboundHandler<String> {
-
-        private final MedicalRecordXMLProcessor xmlProcessor =
-                new MedicalRecordXMLProcessor();
-
-        @Override
-        protected void channelRead0(ChannelHandlerContext ctx, String msg) {
-            System.out.println("Socket request received: " + msg);
-
-            String response;
+        if (commandExecutor != null) {
+            commandExecutor.shutdown(10, TimeUnit.SECONDS);
+        }
+        if (recordStore != null) {
             try {
-                if (msg.startsWith("GET_RECORD:")) {
-                    String patientId = msg.substring(11);
-                    response = handleGetRecord(patientId);
-                } else if (msg.startsWith("SEND_RECORD:")) {
-                    String xmlContent = msg.substring(12);
-                    response = handleReceiveRecord(xmlContent);
-                } else {
-                    response = "ERROR: Unknown command";
-                }
+                recordStore.close();
             } catch (Exception e) {
-                response = "ERROR: " + e.getMessage();
+                System.err.println("Error closing record store: " + e.getMessage());
             }
-
-            ctx.writeAndFlush(response);
         }
+        System.out.println("Socket Server stopped");
+    }
 
-        private String handleGetRecord(String patientId) throws Exception {
-            // Simuler la récupération d'un dossier
-            String xmlFilePath = "records/" + patientId + ".xml";
-
-            if (Files.exists(Paths.get(xmlFilePath))) {
-                MedicalRecord record = xmlProcessor.unmarshalFromXML(xmlFilePath);
-                return "RECORD:" + toXML(record);
-            } else {
-                return "ERROR: Record not found";
+    // Fichiers temporaires des uploads par morceaux ; ceux d'un arrêt brutal sont supprimés
+    private Path prepareUploadDir() throws Exception {
+        Path dir = Paths.get(storeDir, "uploads");
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(dir, "upload-*.part")) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
             }
         }
+        return dir;
+    }
 
-        private String handleReceiveRecord(String xmlContent) throws Exception {
-            // Sauvegarder le dossier reçu
-            MedicalRecord record = xmlProcessor.unmarshalFromXML(
-                    new java.io.ByteArrayInputStream(xmlContent.getBytes())
-            );
+    // Reprise des anciens fichiers records/<patientId>.xml et received_<patientId>.xml absents du store.
+    // Si un patient a les deux, le plus récent est repris (received_ à date égale), l'autre est ignoré.
+    // Seul un fichier repris est déplacé dans records/imported : il n'est pas relu au démarrage suivant ;
+    // un fichier illisible reste en place et sera retenté, un fichier ignoré reste en place
+    private void importLegacyRecords() {
+        Path legacy = Paths.get(legacyDir);
+        if (!Files.isDirectory(legacy)) {
+            return;
+        }
 
-            String outputPath = "records/received_" +
-                    record.getPatient().getPatientId() + ".xml";
-            xmlProcessor.marshalToXML(record, outputPath);
+        // Liste figée avant de déplacer les fichiers hors du répertoire parcouru
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(legacy, "*.xml")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("Failed to list legacy records in " + legacy + ": " + e.getMessage());
+            return;
+        }
 
-            return "SUCCESS: Record saved as " + outputPath;
+        Map<String, List<Path>> filesByPatient = new TreeMap<>();
+        for (Path file : files) {
+            String patientId = file.getFileName().toString()
+                    .replaceFirst("^received_", "")
+                    .replaceFirst("\\.xml$", "");
+            filesByPatient.computeIfAbsent(patientId, id -> new ArrayList<>()).add(file);
         }
 
-        private String toXML(MedicalRecord record) throws Exception {
-            java.io.StringWriter writer = new java.io.StringWriter();
+        int imported = 0;
+        int failed = 0;
+        int skipped = 0;
+        Path importedDir = legacy.resolve("imported");
+        for (Map.Entry<String, List<Path>> entry : filesByPatient.entrySet()) {
+            String patientId = entry.getKey();
+            List<Path> candidates = entry.getValue();
+            if (recordStore.contains(patientId)) {
+                skipped += candidates.size();
+                System.err.println("Legacy record " + candidates + " left in place: " + patientId +
+                        " is already in the record store");
+                continue;
+            }
 
-            jakarta.xml.bind.JAXBContext context =
-                    jakarta.xml.bind.JAXBContext.newInstance(MedicalRecord.class);
-            jakarta.xml.bind.Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(jakarta.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, false);
+            candidates.sort(Comparator.comparing(MedicalSocketServer::lastModified).reversed()
+                    .thenComparing(file -> !file.getFileName().toString().startsWith("received_")));
+            Path file = candidates.get(0);
+            try {
+                recordStore.put(patientId, format.encode(
+                        MedicalRecordXMLProcessor.shared().unmarshalFromXML(file.toString())));
+                imported++;
+            } catch (Exception e) {
+                // Pas de repli sur un fichier plus ancien : il écraserait la version la plus récente
+                failed++;
+                System.err.println("Failed to import legacy record " + file + ": " + e.getMessage());
+                continue;
+            }
 
-            marshaller.marshal(record, writer);
-            return writer.toString();
+            if (candidates.size() > 1) {
+                skipped += candidates.size() - 1;
+                System.err.println("Legacy record " + candidates.subList(1, candidates.size()) +
+                        " left in place: " + file.getFileName() + " is newer");
+            }
+            try {
+                Files.createDirectories(importedDir);
+                Files.move(file, importedDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Imported legacy record " + file + " could not be moved: " + e.getMessage());
+            }
         }
 
-        @Override
-        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-            cause.printStackTrace();
-            ctx.close();
+        if (imported > 0 || failed > 0 || skipped > 0) {
+            System.out.println("Imported " + imported + " legacy record files into the record store" +
+                    (failed > 0 ? ", " + failed + " failed" : "") +
+                    (skipped > 0 ? ", " + skipped + " skipped" : ""));
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
         }
     }
-}
\ No newline at end of file
+}
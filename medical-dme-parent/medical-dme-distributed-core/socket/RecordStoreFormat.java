@@ -0,0 +1,28 @@
+package com.medical.dme.distributed.socket;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.xml.MedicalRecordXMLProcessor;
+
+// xml : contenu renvoyé tel quel ; binary : codec compact, converti en XML à la lecture
+public enum RecordStoreFormat {
+
+    XML {
+        @Override
+        public byte[] encode(MedicalRecord record) throws Exception {
+            return MedicalRecordXMLProcessor.shared().marshalToBytes(record);
+        }
+    },
+    BINARY {
+        @Override
+        public byte[] encode(MedicalRecord record) {
+            return MedicalRecordBinaryCodec.shared().encode(record);
+        }
+    };
+
+    public abstract byte[] encode(MedicalRecord record) throws Exception;
+
+    public static RecordStoreFormat fromProperty(String value) {
+        return "binary".equalsIgnoreCase(value) ? BINARY : XML;
+    }
+}
@@ -0,0 +1,96 @@
+package com.medical.dme.distributed.socket;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Exécute ses tâches une à une, dans l'ordre de soumission, sur un executor partagé.
+ * Chaque tâche est soumise séparément à l'executor : une file chargée ne monopolise
+ * pas un thread au détriment des autres connexions.
+ * Seule la première soumission d'une série peut être refusée (RejectedExecutionException,
+ * tâche non enregistrée) ; si l'executor sature ensuite, la série continue sur le
+ * thread qui vient de terminer la tâche précédente.
+ */
+final class SerialExecutor implements Executor {
+
+    private static final AttributeKey<SerialExecutor> WRITE_LANE = AttributeKey.valueOf("socket.writeLane");
+
+    private final Executor delegate;
+
+    // Gardés par this
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean running;
+
+    SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    // File des écritures d'une connexion, partagée par les handlers de son pipeline
+    static SerialExecutor writeLane(Channel channel, Executor delegate) {
+        Attribute<SerialExecutor> attribute = channel.attr(WRITE_LANE);
+        SerialExecutor lane = attribute.get();
+        if (lane == null) {
+            lane = new SerialExecutor(delegate);
+            SerialExecutor existing = attribute.setIfAbsent(lane);
+            if (existing != null) {
+                lane = existing;
+            }
+        }
+        return lane;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(task);
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            delegate.execute(this::runNext);
+        } catch (RejectedExecutionException e) {
+            // Refus possible ici seulement : la file était vide, rien n'est enregistré
+            tasks.clear();
+            running = false;
+            throw e;
+        }
+    }
+
+    private void runNext() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Serial task failed: " + e);
+            }
+
+            synchronized (this) {
+                if (tasks.isEmpty()) {
+                    running = false;
+                    return;
+                }
+                try {
+                    delegate.execute(this::runNext);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Executor saturé : la série se poursuit sur ce thread
+                }
+            }
+        }
+    }
+}
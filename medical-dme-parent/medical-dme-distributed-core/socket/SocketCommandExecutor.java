@@ -0,0 +1,124 @@
+package com.medical.dme.distributed.socket;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exécution des commandes socket hors des boucles d'événements Netty.
+ * Sur Java 21+, un thread virtuel par commande ; sur Java 17, un pool de
+ * threads à file bornée. Les compteurs permettent de suivre la saturation.
+ */
+public final class SocketCommandExecutor implements Executor {
+
+    private final ExecutorService delegate;
+    private final boolean virtualThreads;
+
+    // Commandes soumises mais pas encore démarrées
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private SocketCommandExecutor(ExecutorService delegate, boolean virtualThreads) {
+        this.delegate = delegate;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public static SocketCommandExecutor create(boolean preferVirtualThreads, int platformThreads, int queueCapacity) {
+        if (preferVirtualThreads) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return new SocketCommandExecutor(virtual, true);
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(platformThreads, platformThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "socket-command-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        return new SocketCommandExecutor(pool, false);
+    }
+
+    // Le module cible Java 17 : l'API des threads virtuels est résolue à l'exécution
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCommands() {
+        return active.get();
+    }
+
+    public long getCompletedCommands() {
+        return completed.sum();
+    }
+
+    public long getRejectedCommands() {
+        return rejected.sum();
+    }
+
+    public void shutdown(long timeout, TimeUnit unit) {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(timeout, unit)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (virtualThreads ? "virtual" : "platform") + " executor - queued: " + getQueueDepth() +
+                ", active: " + getActiveCommands() + ", completed: " + getCompletedCommands() +
+                ", rejected: " + getRejectedCommands();
+    }
+}
@@ -0,0 +1,69 @@
+package com.medical.dme.distributed.socket;
+
+import java.beans.ConstructorProperties;
+
+// Instantané des compteurs d'un opcode ; latences en microsecondes depuis le dernier reset
+public final class SocketCommandStats {
+
+    private final String opcode;
+    private final long requests;
+    private final long errors;
+    private final long busy;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+
+    @ConstructorProperties({"opcode", "requests", "errors", "busy", "p50Micros", "p99Micros", "p999Micros",
+            "maxMicros"})
+    public SocketCommandStats(String opcode, long requests, long errors, long busy,
+                              long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+        this.opcode = opcode;
+        this.requests = requests;
+        this.errors = errors;
+        this.busy = busy;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public String getOpcode() {
+        return opcode;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getBusy() {
+        return busy;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return opcode + "[requests=" + requests + ", errors=" + errors + ", busy=" + busy +
+                ", p50=" + p50Micros + "us, p99=" + p99Micros + "us, p99.9=" + p999Micros +
+                "us, max=" + maxMicros + "us]";
+    }
+}
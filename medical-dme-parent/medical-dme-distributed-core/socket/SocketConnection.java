@@ -0,0 +1,76 @@
+package com.medical.dme.distributed.socket;
+
+import com.medical.dme.distributed.socket.protocol.SocketFrameDecoder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.util.AttributeKey;
+
+import java.time.Instant;
+
+/**
+ * Comptabilité d'une connexion ouverte. Les compteurs sont écrits depuis la
+ * boucle de la connexion uniquement, et lus depuis n'importe quel thread.
+ */
+final class SocketConnection {
+
+    private static final AttributeKey<SocketConnection> KEY = AttributeKey.valueOf("socket.connection");
+
+    private final Channel channel;
+    private final long openedAtMillis = System.currentTimeMillis();
+
+    private volatile long bytesRead;
+    private volatile long bytesWritten;
+    private volatile long lastReadMillis = openedAtMillis;
+    // Octets d'upload reçus, pas encore écrits sur disque
+    private volatile long uploadPendingBytes;
+
+    private SocketConnection(Channel channel) {
+        this.channel = channel;
+    }
+
+    static SocketConnection attach(Channel channel) {
+        SocketConnection connection = new SocketConnection(channel);
+        channel.attr(KEY).set(connection);
+        return connection;
+    }
+
+    // null si la connexion n'est pas suivie (pipeline sans SocketTrafficHandler)
+    static SocketConnection of(Channel channel) {
+        return channel.attr(KEY).get();
+    }
+
+    String id() {
+        return channel.id().asShortText();
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    void read(long bytes) {
+        bytesRead += bytes;
+        lastReadMillis = System.currentTimeMillis();
+    }
+
+    void written(long bytes) {
+        bytesWritten += bytes;
+    }
+
+    void uploadPendingBytes(long bytes) {
+        uploadPendingBytes = bytes;
+    }
+
+    SocketConnectionInfo snapshot(SocketFlowControl flowControl) {
+        // Lectures hors boucle : valeurs indicatives
+        ChannelOutboundBuffer outbound = channel.unsafe().outboundBuffer();
+        SocketFrameDecoder decoder = channel.pipeline().get(SocketFrameDecoder.class);
+        long now = System.currentTimeMillis();
+
+        return new SocketConnectionInfo(id(), String.valueOf(channel.remoteAddress()),
+                Instant.ofEpochMilli(openedAtMillis).toString(), now - lastReadMillis,
+                bytesRead, bytesWritten, flowControl.getInFlight(channel),
+                outbound != null ? outbound.totalPendingWriteBytes() : 0,
+                decoder != null ? decoder.bufferedBytes() : 0,
+                uploadPendingBytes, channel.isWritable());
+    }
+}
@@ -0,0 +1,96 @@
+package com.medical.dme.distributed.socket;
+
+import java.beans.ConstructorProperties;
+
+// Instantané d'une connexion : ce qu'elle a échangé et ce qu'elle retient en mémoire
+public final class SocketConnectionInfo {
+
+    private final String id;
+    private final String remoteAddress;
+    private final String openedAt;
+    private final long idleMillis;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final int requestsInFlight;
+    private final long outboundBufferedBytes;
+    private final long inboundBufferedBytes;
+    private final long uploadBufferedBytes;
+    private final boolean writable;
+
+    @ConstructorProperties({"id", "remoteAddress", "openedAt", "idleMillis", "bytesRead", "bytesWritten",
+            "requestsInFlight", "outboundBufferedBytes", "inboundBufferedBytes", "uploadBufferedBytes", "writable"})
+    public SocketConnectionInfo(String id, String remoteAddress, String openedAt, long idleMillis,
+                                long bytesRead, long bytesWritten, int requestsInFlight,
+                                long outboundBufferedBytes, long inboundBufferedBytes, long uploadBufferedBytes,
+                                boolean writable) {
+        this.id = id;
+        this.remoteAddress = remoteAddress;
+        this.openedAt = openedAt;
+        this.idleMillis = idleMillis;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.requestsInFlight = requestsInFlight;
+        this.outboundBufferedBytes = outboundBufferedBytes;
+        this.inboundBufferedBytes = inboundBufferedBytes;
+        this.uploadBufferedBytes = uploadBufferedBytes;
+        this.writable = writable;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public String getOpenedAt() {
+        return openedAt;
+    }
+
+    // Depuis la dernière lecture
+    public long getIdleMillis() {
+        return idleMillis;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public int getRequestsInFlight() {
+        return requestsInFlight;
+    }
+
+    // Réponses en attente d'envoi
+    public long getOutboundBufferedBytes() {
+        return outboundBufferedBytes;
+    }
+
+    // Trame partielle en cours de réassemblage
+    public long getInboundBufferedBytes() {
+        return inboundBufferedBytes;
+    }
+
+    public long getUploadBufferedBytes() {
+        return uploadBufferedBytes;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    // Total retenu en mémoire par la connexion
+    public long getBufferedBytes() {
+        return outboundBufferedBytes + inboundBufferedBytes + uploadBufferedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Connection[" + id + ", " + remoteAddress + ", inFlight=" + requestsInFlight +
+                ", buffered=" + getBufferedBytes() + " bytes, idle=" + idleMillis + " ms]";
+    }
+}
@@ -0,0 +1,95 @@
+package com.medical.dme.distributed.socket;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limites de requêtes en cours, par connexion et pour tout le serveur.
+ * Une requête est comptée de sa réception jusqu'à l'écriture de sa réponse,
+ * ce qui borne aussi les réponses en attente dans les tampons de sortie ;
+ * les éléments d'un lot traités en parallèle sont comptés chacun.
+ */
+public final class SocketFlowControl {
+
+    private static final AttributeKey<AtomicInteger> IN_FLIGHT = AttributeKey.valueOf("socket.inFlight");
+
+    private final int maxPerConnection;
+    private final int maxGlobal;
+
+    private final AtomicInteger globalInFlight = new AtomicInteger();
+    private final LongAdder busyResponses = new LongAdder();
+
+    public SocketFlowControl(int maxPerConnection, int maxGlobal) {
+        this.maxPerConnection = maxPerConnection;
+        this.maxGlobal = maxGlobal;
+    }
+
+    // false si une des limites est atteinte : la requête doit recevoir BUSY
+    boolean tryAcquire(Channel channel) {
+        if (!acquire(channel)) {
+            busyResponses.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Permis d'un élément de lot en parallèle ; un refus n'est pas un BUSY,
+    // le lot continue simplement avec moins d'éléments en cours
+    boolean tryAcquireItem(Channel channel) {
+        return acquire(channel);
+    }
+
+    private boolean acquire(Channel channel) {
+        AtomicInteger connectionInFlight = inFlight(channel);
+        if (connectionInFlight.incrementAndGet() > maxPerConnection) {
+            connectionInFlight.decrementAndGet();
+            return false;
+        }
+        if (globalInFlight.incrementAndGet() > maxGlobal) {
+            globalInFlight.decrementAndGet();
+            connectionInFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    void release(Channel channel) {
+        inFlight(channel).decrementAndGet();
+        globalInFlight.decrementAndGet();
+    }
+
+    private static AtomicInteger inFlight(Channel channel) {
+        AtomicInteger counter = channel.attr(IN_FLIGHT).get();
+        if (counter == null) {
+            counter = new AtomicInteger();
+            AtomicInteger existing = channel.attr(IN_FLIGHT).setIfAbsent(counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    public int getInFlight() {
+        return globalInFlight.get();
+    }
+
+    public int getInFlight(Channel channel) {
+        return inFlight(channel).get();
+    }
+
+    public long getBusyResponses() {
+        return busyResponses.sum();
+    }
+
+    public int getMaxPerConnection() {
+        return maxPerConnection;
+    }
+
+    public int getMaxGlobal() {
+        return maxGlobal;
+    }
+}
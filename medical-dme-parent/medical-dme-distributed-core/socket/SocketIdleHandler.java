@@ -0,0 +1,56 @@
+package com.medical.dme.distributed.socket;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ferme les connexions inactives signalées par l'IdleStateHandler :
+ * - READER_IDLE : le client n'envoie plus rien ; fermée seulement si aucune
+ *   requête n'est en cours, donc une fois toutes ses réponses envoyées ;
+ * - WRITER_IDLE : plus aucune écriture n'avance alors que le tampon de sortie est
+ *   plein, le client ne lit plus ses réponses ; fermée sans attendre.
+ * Les fermetures sont comptées dans {@link SocketMetrics} ; la trace console est
+ * limitée à une ligne par seconde, une vague de clients morts ne la noie pas.
+ */
+@ChannelHandler.Sharable
+class SocketIdleHandler extends ChannelInboundHandlerAdapter {
+
+    // Partagé avec ChunkedUploadHandler, qui ferme aussi des connexions inactives
+    static final LogRateLimiter CLOSE_LOG = new LogRateLimiter(1, TimeUnit.SECONDS);
+
+    private final SocketFlowControl flowControl;
+    private final SocketMetrics metrics;
+
+    SocketIdleHandler(SocketFlowControl flowControl, SocketMetrics metrics) {
+        this.flowControl = flowControl;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof IdleStateEvent)) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+
+        Channel channel = ctx.channel();
+        IdleState state = ((IdleStateEvent) evt).state();
+        if (state == IdleState.READER_IDLE && flowControl.getInFlight(channel) == 0) {
+            close(ctx, "idle");
+        } else if (state == IdleState.WRITER_IDLE && !channel.isWritable()) {
+            close(ctx, "not reading its responses");
+        }
+    }
+
+    private void close(ChannelHandlerContext ctx, String reason) {
+        CLOSE_LOG.log(System.out, () -> "Closing connection " + ctx.channel().remoteAddress() + ": " + reason);
+        metrics.idleConnectionClosed();
+        ctx.close();
+    }
+}
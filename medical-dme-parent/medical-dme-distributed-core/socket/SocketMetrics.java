@@ -0,0 +1,201 @@
+package com.medical.dme.distributed.socket;
+
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelId;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs du serveur socket : latence par commande (de la réception de la
+ * requête à l'écriture de sa réponse finale), octets échangés, connexions et erreurs,
+ * ainsi que le registre des connexions ouvertes.
+ * L'enregistrement est sans verrou (Recorder HdrHistogram, LongAdder) ; seule la
+ * lecture des histogrammes, peu fréquente, est synchronisée.
+ * Une requête sur logSampleRate est tracée sur la console, sur une ligne clé=valeur.
+ */
+public final class SocketMetrics {
+
+    private final Map<SocketOpcode, CommandMetrics> commands = new EnumMap<>(SocketOpcode.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final Map<ChannelId, SocketConnection> connections = new ConcurrentHashMap<>();
+    private final LongAdder totalConnections = new LongAdder();
+    private final LongAdder idleClosedConnections = new LongAdder();
+    private final LongAdder decodeErrors = new LongAdder();
+    private final LongAdder unknownRequests = new LongAdder();
+
+    private final int logSampleRate;
+    private final AtomicLong logSequence = new AtomicLong();
+
+    // logSampleRate : 0 pour ne rien tracer, 1 pour tout tracer
+    public SocketMetrics(int logSampleRate) {
+        this.logSampleRate = logSampleRate;
+        for (SocketOpcode opcode : SocketOpcode.values()) {
+            if (opcode.code() < 0x80) {
+                commands.put(opcode, new CommandMetrics(opcode));
+            }
+        }
+    }
+
+    /**
+     * Fin d'une requête : réponse finale écrite (ou échouée).
+     * status est l'opcode de cette réponse, null si elle n'a pas pu être envoyée.
+     */
+    void recordCommand(SocketOpcode opcode, int requestId, Channel channel, long startNanos, SocketOpcode status) {
+        long latencyNanos = System.nanoTime() - startNanos;
+        CommandMetrics metrics = opcode != null ? commands.get(opcode) : null;
+        if (metrics == null) {
+            unknownRequests.increment();
+        } else {
+            metrics.record(latencyNanos, status);
+        }
+
+        if (logSampleRate > 0 && logSequence.incrementAndGet() % logSampleRate == 0) {
+            System.out.println("socket.request opcode=" + opcode + " requestId=" + requestId +
+                    " remote=" + channel.remoteAddress() + " status=" + status +
+                    " latencyMicros=" + TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        }
+    }
+
+    void connectionOpened(Channel channel) {
+        connections.put(channel.id(), SocketConnection.attach(channel));
+        totalConnections.increment();
+    }
+
+    void connectionClosed(Channel channel) {
+        connections.remove(channel.id());
+    }
+
+    void idleConnectionClosed() {
+        idleClosedConnections.increment();
+    }
+
+    void bytesRead(SocketConnection connection, long bytes) {
+        bytesRead.add(bytes);
+        if (connection != null) {
+            connection.read(bytes);
+        }
+    }
+
+    void bytesWritten(SocketConnection connection, long bytes) {
+        bytesWritten.add(bytes);
+        connection.written(bytes);
+    }
+
+    public List<SocketConnectionInfo> getConnections(SocketFlowControl flowControl) {
+        List<SocketConnectionInfo> infos = new ArrayList<>(connections.size());
+        for (SocketConnection connection : connections.values()) {
+            infos.add(connection.snapshot(flowControl));
+        }
+        return infos;
+    }
+
+    // false si la connexion n'existe plus
+    public boolean closeConnection(String id) {
+        for (SocketConnection connection : connections.values()) {
+            if (connection.id().equals(id)) {
+                connection.channel().close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void decodeError() {
+        decodeErrors.increment();
+    }
+
+    public List<SocketCommandStats> getCommandStats() {
+        List<SocketCommandStats> stats = new ArrayList<>(commands.size());
+        for (CommandMetrics metrics : commands.values()) {
+            stats.add(metrics.snapshot());
+        }
+        return stats;
+    }
+
+    public void resetLatencies() {
+        for (CommandMetrics metrics : commands.values()) {
+            metrics.reset();
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public int getActiveConnections() {
+        return connections.size();
+    }
+
+    public long getIdleClosedConnections() {
+        return idleClosedConnections.sum();
+    }
+
+    public long getTotalConnections() {
+        return totalConnections.sum();
+    }
+
+    public long getDecodeErrors() {
+        return decodeErrors.sum();
+    }
+
+    public long getUnknownRequests() {
+        return unknownRequests.sum();
+    }
+
+    private static final class CommandMetrics {
+
+        private final SocketOpcode opcode;
+        // Latences en microsecondes, 3 chiffres significatifs, plage ajustée automatiquement
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram latencies = new Histogram(3);
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder busy = new LongAdder();
+        private Histogram interval;
+
+        CommandMetrics(SocketOpcode opcode) {
+            this.opcode = opcode;
+        }
+
+        void record(long latencyNanos, SocketOpcode status) {
+            requests.increment();
+            if (status == SocketOpcode.BUSY) {
+                // Refusée sans être exécutée : pas de latence significative
+                busy.increment();
+                return;
+            }
+            if (status == null || status == SocketOpcode.ERROR) {
+                errors.increment();
+            }
+            recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        }
+
+        synchronized SocketCommandStats snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            latencies.add(interval);
+            return new SocketCommandStats(opcode.name(), requests.sum(), errors.sum(), busy.sum(),
+                    latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(99),
+                    latencies.getValueAtPercentile(99.9), latencies.getMaxValue());
+        }
+
+        synchronized void reset() {
+            interval = recorder.getIntervalHistogram(interval);
+            latencies.reset();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.medical.dme.distributed.socket;
+
+import java.util.List;
+
+// Exposé sous com.medical.dme:type=SocketServer,port=<port>
+public interface SocketServerMXBean {
+
+    String getTransport();
+
+    int getActiveConnections();
+
+    long getTotalConnections();
+
+    // Fermées par SocketIdleHandler ou pour upload abandonné
+    long getIdleClosedConnections();
+
+    // Par connexion : octets échangés, requêtes en cours, mémoire retenue
+    List<SocketConnectionInfo> getConnections();
+
+    // Somme des getBufferedBytes() des connexions
+    long getBufferedBytes();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getDecodeErrors();
+
+    long getUnknownRequests();
+
+    int getInFlight();
+
+    long getBusyResponses();
+
+    int getCommandQueueDepth();
+
+    int getActiveCommands();
+
+    long getCompletedCommands();
+
+    long getRejectedCommands();
+
+    long getEventLoopLagMillis();
+
+    List<SocketCommandStats> getCommandStats();
+
+    // Retard maximal des boucles depuis l'appel précédent
+    long takeMaxEventLoopLagMillis();
+
+    void resetLatencies();
+
+    // Identifiant court d'une connexion de getConnections() ; false si elle est déjà fermée
+    boolean closeConnection(String id);
+}
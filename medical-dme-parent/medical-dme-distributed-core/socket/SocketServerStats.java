@@ -0,0 +1,131 @@
+package com.medical.dme.distributed.socket;
+
+import java.util.List;
+
+// Vue JMX des compteurs du serveur, de son executor et de ses boucles d'événements
+class SocketServerStats implements SocketServerMXBean {
+
+    private final SocketTransport transport;
+    private final SocketMetrics metrics;
+    private final SocketFlowControl flowControl;
+    private final SocketCommandExecutor commandExecutor;
+    private final EventLoopLagMonitor lagMonitor;
+
+    SocketServerStats(SocketTransport transport, SocketMetrics metrics, SocketFlowControl flowControl,
+                      SocketCommandExecutor commandExecutor, EventLoopLagMonitor lagMonitor) {
+        this.transport = transport;
+        this.metrics = metrics;
+        this.flowControl = flowControl;
+        this.commandExecutor = commandExecutor;
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    public String getTransport() {
+        return transport.name();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return metrics.getActiveConnections();
+    }
+
+    @Override
+    public long getTotalConnections() {
+        return metrics.getTotalConnections();
+    }
+
+    @Override
+    public long getIdleClosedConnections() {
+        return metrics.getIdleClosedConnections();
+    }
+
+    @Override
+    public List<SocketConnectionInfo> getConnections() {
+        return metrics.getConnections(flowControl);
+    }
+
+    @Override
+    public long getBufferedBytes() {
+        long buffered = 0;
+        for (SocketConnectionInfo connection : getConnections()) {
+            buffered += connection.getBufferedBytes();
+        }
+        return buffered;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return metrics.getBytesRead();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return metrics.getBytesWritten();
+    }
+
+    @Override
+    public long getDecodeErrors() {
+        return metrics.getDecodeErrors();
+    }
+
+    @Override
+    public long getUnknownRequests() {
+        return metrics.getUnknownRequests();
+    }
+
+    @Override
+    public int getInFlight() {
+        return flowControl.getInFlight();
+    }
+
+    @Override
+    public long getBusyResponses() {
+        return flowControl.getBusyResponses();
+    }
+
+    @Override
+    public int getCommandQueueDepth() {
+        return commandExecutor.getQueueDepth();
+    }
+
+    @Override
+    public int getActiveCommands() {
+        return commandExecutor.getActiveCommands();
+    }
+
+    @Override
+    public long getCompletedCommands() {
+        return commandExecutor.getCompletedCommands();
+    }
+
+    @Override
+    public long getRejectedCommands() {
+        return commandExecutor.getRejectedCommands();
+    }
+
+    @Override
+    public long getEventLoopLagMillis() {
+        return lagMonitor.getLastLagMillis();
+    }
+
+    @Override
+    public List<SocketCommandStats> getCommandStats() {
+        return metrics.getCommandStats();
+    }
+
+    @Override
+    public long takeMaxEventLoopLagMillis() {
+        return lagMonitor.getMaxLagMillisAndReset();
+    }
+
+    @Override
+    public void resetLatencies() {
+        metrics.resetLatencies();
+    }
+
+    @Override
+    public boolean closeConnection(String id) {
+        return metrics.closeConnection(id);
+    }
+}
@@ -0,0 +1,62 @@
+package com.medical.dme.distributed.socket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/**
+ * Premier handler du pipeline : enregistre la connexion et compte les octets
+ * tels qu'ils passent sur le réseau (chiffrés si TLS est actif).
+ */
+@ChannelHandler.Sharable
+class SocketTrafficHandler extends ChannelDuplexHandler {
+
+    private final SocketMetrics metrics;
+
+    SocketTrafficHandler(SocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        metrics.connectionOpened(ctx.channel());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        metrics.connectionClosed(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            metrics.bytesRead(SocketConnection.of(ctx.channel()), ((ByteBuf) msg).readableBytes());
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        // Taille lue avant l'écriture : le buffer est libéré une fois envoyé
+        long bytes = msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes()
+                : msg instanceof ByteBufHolder ? ((ByteBufHolder) msg).content().readableBytes()
+                : msg instanceof FileRegion ? ((FileRegion) msg).count()
+                : 0;
+        SocketConnection connection = SocketConnection.of(ctx.channel());
+        if (bytes > 0 && connection != null) {
+            promise = promise.unvoid();
+            promise.addListener(future -> {
+                if (future.isSuccess()) {
+                    metrics.bytesWritten(connection, bytes);
+                }
+            });
+        }
+        super.write(ctx, msg, promise);
+    }
+}
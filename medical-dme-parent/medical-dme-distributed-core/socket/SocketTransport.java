@@ -0,0 +1,78 @@
+package com.medical.dme.distributed.socket;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Transport Netty : epoll natif sous Linux quand la bibliothèque est chargeable,
+ * NIO sinon. Partagé par le serveur et le client socket.
+ */
+public enum SocketTransport {
+
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String poolName) {
+            return new EpollEventLoopGroup(threads, new DefaultThreadFactory(poolName, true));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> channelClass() {
+            return EpollSocketChannel.class;
+        }
+    },
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String poolName) {
+            return new NioEventLoopGroup(threads, new DefaultThreadFactory(poolName, true));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> channelClass() {
+            return NioSocketChannel.class;
+        }
+    };
+
+    // threads = 0 : valeur par défaut de Netty (deux par cœur)
+    public abstract EventLoopGroup newEventLoopGroup(int threads, String poolName);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> channelClass();
+
+    // auto : epoll si disponible ; epoll explicite : échec si indisponible
+    public static SocketTransport select(String configured) {
+        if ("nio".equalsIgnoreCase(configured)) {
+            return NIO;
+        }
+        if ("epoll".equalsIgnoreCase(configured)) {
+            if (!Epoll.isAvailable()) {
+                throw new IllegalStateException("Epoll transport requested but unavailable",
+                        Epoll.unavailabilityCause());
+            }
+            return EPOLL;
+        }
+        if (!"auto".equalsIgnoreCase(configured)) {
+            throw new IllegalArgumentException("Unknown socket transport: " + configured);
+        }
+        return Epoll.isAvailable() ? EPOLL : NIO;
+    }
+}
@@ -0,0 +1,9 @@
+package com.medical.dme.distributed.socket.client;
+
+// Résultat d'un élément de lot : valeur, ou message d'erreur du serveur
+public record BatchItem<T>(int index, T value, String error) {
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,431 @@
+package com.medical.dme.distributed.socket.client;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.distributed.socket.SocketTransport;
+import com.medical.dme.distributed.socket.protocol.BatchPayload;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketFrameDecoder;
+import com.medical.dme.distributed.socket.protocol.SocketFrameEncoder;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedStream;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Client du protocole socket. Les appelants sont multiplexés sur quelques
+ * connexions : chaque requête porte un requestId et plusieurs requêtes
+ * peuvent être en vol sur une même connexion, les réponses étant rapprochées
+ * par identifiant quel que soit leur ordre d'arrivée.
+ * Les dossiers sont échangés au format du codec binaire.
+ */
+public class MedicalSocketClient implements Closeable {
+
+    private static final int DEFAULT_CONNECTIONS = 4;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    private static final int UPLOAD_CHUNK_SIZE = 64 * 1024;
+
+    private final String host;
+    private final int port;
+    private final long requestTimeoutMillis;
+
+    private final EventLoopGroup group;
+    private final Bootstrap bootstrap;
+    private final Connection[] connections;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    public MedicalSocketClient(String host, int port) {
+        this(host, port, DEFAULT_CONNECTIONS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public MedicalSocketClient(String host, int port, int connectionCount, long requestTimeoutMillis) {
+        this(host, port, connectionCount, requestTimeoutMillis, SocketTransport.select("auto"));
+    }
+
+    public MedicalSocketClient(String host, int port, int connectionCount, long requestTimeoutMillis,
+                               SocketTransport transport) {
+        this.host = host;
+        this.port = port;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+
+        group = transport.newEventLoopGroup(
+                Math.min(connectionCount, Runtime.getRuntime().availableProcessors()), "socket-client");
+        bootstrap = new Bootstrap()
+                .group(group)
+                .channel(transport.channelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true);
+
+        connections = new Connection[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            connections[i] = new Connection();
+        }
+    }
+
+    public CompletableFuture<MedicalRecord> getRecord(String patientId) {
+        return request(SocketOpcode.GET_RECORD, SocketProtocol.FLAG_BINARY_CODEC,
+                Unpooled.copiedBuffer(patientId, CharsetUtil.UTF_8),
+                response -> MedicalRecordBinaryCodec.shared().decode(response.content().nioBuffer()));
+    }
+
+    // Renvoie le message de confirmation du serveur
+    public CompletableFuture<String> sendRecord(MedicalRecord record) {
+        return request(SocketOpcode.SEND_RECORD, SocketProtocol.FLAG_BINARY_CODEC,
+                Unpooled.wrappedBuffer(MedicalRecordBinaryCodec.shared().encode(record)),
+                SocketFrame::payloadAsString);
+    }
+
+    /**
+     * Envoie un dossier XML par morceaux (SEND_BEGIN/CHUNK/END), sans le charger
+     * en mémoire : pour les dossiers trop gros pour une seule trame.
+     */
+    public CompletableFuture<String> sendRecordFile(Path xmlFile) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            FileChannel file = FileChannel.open(xmlFile, StandardOpenOption.READ);
+            upload(new ChunkedNioFile(file, UPLOAD_CHUNK_SIZE), file.size(), result);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    // Idem depuis un flux XML de taille inconnue ; le flux est fermé à la fin de l'envoi
+    public CompletableFuture<String> sendRecordStream(InputStream xml) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        upload(new ChunkedStream(xml, UPLOAD_CHUNK_SIZE), -1, result);
+        return result;
+    }
+
+    private void upload(ChunkedInput<ByteBuf> body, long length, CompletableFuture<String> result) {
+        int requestId = nextRequestId.incrementAndGet();
+        send(requestId, new RecordUploadInput(body, requestId, 0, length),
+                new PendingRequest<>(result, SocketFrame::payloadAsString));
+    }
+
+    // Un seul aller-retour pour tout le lot ; les dossiers absents ne figurent pas dans le résultat
+    public CompletableFuture<Map<String, MedicalRecord>> getRecords(Collection<String> patientIds) {
+        List<String> ids = new ArrayList<>(patientIds);
+        return batchRequest(SocketOpcode.MGET_RECORD, SocketProtocol.FLAG_BINARY_CODEC,
+                BatchPayload.encodeStrings(ids), ids.size(),
+                item -> MedicalRecordBinaryCodec.shared().decode(item.nioBuffer()))
+                .thenApply(items -> {
+                    Map<String, MedicalRecord> records = new LinkedHashMap<>();
+                    for (BatchItem<MedicalRecord> item : items) {
+                        if (item.isSuccess()) {
+                            records.put(ids.get(item.index()), item.value());
+                        }
+                    }
+                    return records;
+                });
+    }
+
+    // Un résultat par dossier, dans l'ordre de la liste
+    public CompletableFuture<List<BatchItem<String>>> sendRecords(List<MedicalRecord> records) {
+        List<byte[]> encoded = new ArrayList<>(records.size());
+        for (MedicalRecord record : records) {
+            encoded.add(MedicalRecordBinaryCodec.shared().encode(record));
+        }
+        return batchRequest(SocketOpcode.MSEND_RECORD, SocketProtocol.FLAG_BINARY_CODEC,
+                BatchPayload.encode(encoded), records.size(), item -> item.toString(CharsetUtil.UTF_8));
+    }
+
+    private <T> CompletableFuture<List<BatchItem<T>>> batchRequest(SocketOpcode opcode, int flags, ByteBuf payload,
+                                                                    int itemCount, Function<ByteBuf, T> itemDecoder) {
+        CompletableFuture<List<BatchItem<T>>> result = new CompletableFuture<>();
+        send(opcode, flags, payload, new BatchPendingRequest<>(result, itemCount, itemDecoder));
+        return result;
+    }
+
+    /**
+     * Envoie une requête brute. Le decoder s'exécute sur la boucle d'événements
+     * de la connexion, avant libération de la trame de réponse.
+     */
+    public <T> CompletableFuture<T> request(SocketOpcode opcode, int flags, ByteBuf payload,
+                                            Function<SocketFrame, T> decoder) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        send(opcode, flags, payload, new PendingRequest<>(result, decoder));
+        return result;
+    }
+
+    private void send(SocketOpcode opcode, int flags, ByteBuf payload, PendingRequest<?> request) {
+        int requestId = nextRequestId.incrementAndGet();
+        send(requestId, new SocketFrame(opcode, flags, requestId, payload), request);
+    }
+
+    // message : une SocketFrame, ou un RecordUploadInput découpé par le ChunkedWriteHandler
+    private void send(int requestId, Object message, PendingRequest<?> request) {
+        Connection connection = selectConnection();
+        connection.connect().addListener((ChannelFutureListener) connected -> {
+            if (!connected.isSuccess()) {
+                discard(message);
+                request.fail(connected.cause());
+                return;
+            }
+            connection.send(connected.channel(), requestId, message, request);
+        });
+    }
+
+    private static void discard(Object message) {
+        if (message instanceof ChunkedInput) {
+            try {
+                ((ChunkedInput<?>) message).close();
+            } catch (Exception e) {
+                // Rien de plus à faire, la requête est déjà en échec
+            }
+        } else {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    public int getPendingRequests() {
+        int pending = 0;
+        for (Connection connection : connections) {
+            pending += connection.pending.size();
+        }
+        return pending;
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        group.shutdownGracefully(0, 2, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    // Connexion la moins chargée, en partant d'une position tournante
+    private Connection selectConnection() {
+        int start = Math.floorMod(nextConnection.getAndIncrement(), connections.length);
+        Connection best = connections[start];
+        for (int i = 1; i < connections.length && !best.pending.isEmpty(); i++) {
+            Connection candidate = connections[(start + i) % connections.length];
+            if (candidate.pending.size() < best.pending.size()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private final class Connection {
+
+        private final Map<Integer, PendingRequest<?>> pending = new ConcurrentHashMap<>();
+        private ChannelFuture channelFuture;
+
+        // Connexion établie à la première requête, rétablie si elle a été fermée
+        synchronized ChannelFuture connect() {
+            if (channelFuture == null || (channelFuture.isDone()
+                    && (!channelFuture.isSuccess() || !channelFuture.channel().isActive()))) {
+                channelFuture = bootstrap.clone()
+                        .handler(new ChannelInitializer<SocketChannel>() {
+                            @Override
+                            protected void initChannel(SocketChannel ch) {
+                                ch.pipeline().addLast(new SocketFrameDecoder(SocketProtocol.DEFAULT_MAX_FRAME_LENGTH));
+                                ch.pipeline().addLast(SocketFrameEncoder.INSTANCE);
+                                // Uploads par morceaux : une trame à la fois, selon la place en sortie
+                                ch.pipeline().addLast(new ChunkedWriteHandler());
+                                ch.pipeline().addLast(new ResponseHandler(Connection.this));
+                            }
+                        })
+                        .connect(host, port);
+            }
+            return channelFuture;
+        }
+
+        void send(Channel channel, int requestId, Object message, PendingRequest<?> request) {
+            pending.put(requestId, request);
+            request.timeout = channel.eventLoop().schedule(() -> {
+                if (pending.remove(requestId, request)) {
+                    request.future.completeExceptionally(new TimeoutException(
+                            "No response for request " + requestId + " after " + requestTimeoutMillis + " ms"));
+                }
+            }, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            channel.writeAndFlush(message).addListener((ChannelFutureListener) written -> {
+                if (!written.isSuccess() && pending.remove(requestId, request)) {
+                    request.fail(written.cause());
+                }
+            });
+        }
+
+        void failAll(Throwable cause) {
+            for (Integer requestId : pending.keySet()) {
+                PendingRequest<?> request = pending.remove(requestId);
+                if (request != null) {
+                    request.fail(cause);
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (channelFuture != null) {
+                channelFuture.channel().close();
+            }
+        }
+    }
+
+    private static class PendingRequest<T> {
+
+        private final CompletableFuture<T> future;
+        private final Function<SocketFrame, T> decoder;
+        private volatile ScheduledFuture<?> timeout;
+
+        PendingRequest(CompletableFuture<T> future, Function<SocketFrame, T> decoder) {
+            this.future = future;
+            this.decoder = decoder;
+        }
+
+        // true quand la requête est terminée
+        boolean onFrame(SocketFrame response) {
+            complete(response);
+            return true;
+        }
+
+        void complete(SocketFrame response) {
+            cancelTimeout();
+            if (response.opcode() == SocketOpcode.ERROR) {
+                future.completeExceptionally(new IOException(response.payloadAsString()));
+                return;
+            }
+            if (response.opcode() == SocketOpcode.BUSY) {
+                future.completeExceptionally(new ServerBusyException(response.payloadAsString()));
+                return;
+            }
+            try {
+                future.complete(decode(response));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        T decode(SocketFrame response) {
+            return decoder.apply(response);
+        }
+
+        void fail(Throwable cause) {
+            cancelTimeout();
+            future.completeExceptionally(cause);
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+
+    // Accumule les réponses des éléments jusqu'à BATCH_END
+    private static final class BatchPendingRequest<T> extends PendingRequest<List<BatchItem<T>>> {
+
+        private final BatchItem<T>[] items;
+        private final Function<ByteBuf, T> itemDecoder;
+
+        @SuppressWarnings("unchecked")
+        BatchPendingRequest(CompletableFuture<List<BatchItem<T>>> future, int itemCount,
+                            Function<ByteBuf, T> itemDecoder) {
+            super(future, null);
+            this.items = new BatchItem[itemCount];
+            this.itemDecoder = itemDecoder;
+        }
+
+        @Override
+        boolean onFrame(SocketFrame response) {
+            if (!response.hasFlag(SocketProtocol.FLAG_BATCH_ITEM)) {
+                // BATCH_END, ou erreur/refus portant sur tout le lot
+                complete(response);
+                return true;
+            }
+
+            ByteBuf content = response.content();
+            int index = content.readInt();
+            if (index < 0 || index >= items.length) {
+                return false;
+            }
+            if (response.opcode() == SocketOpcode.RECORD || response.opcode() == SocketOpcode.SUCCESS) {
+                try {
+                    items[index] = new BatchItem<>(index, itemDecoder.apply(content), null);
+                } catch (RuntimeException e) {
+                    items[index] = new BatchItem<>(index, null, String.valueOf(e.getMessage()));
+                }
+            } else {
+                items[index] = new BatchItem<>(index, null, content.toString(CharsetUtil.UTF_8));
+            }
+            return false;
+        }
+
+        @Override
+        List<BatchItem<T>> decode(SocketFrame response) {
+            if (response.opcode() != SocketOpcode.BATCH_END) {
+                throw new IllegalStateException("Unexpected batch response: " + response);
+            }
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] == null) {
+                    items[i] = new BatchItem<>(i, null, "No response for item");
+                }
+            }
+            return Arrays.asList(items);
+        }
+    }
+
+    private static final class ResponseHandler extends SimpleChannelInboundHandler<SocketFrame> {
+
+        private final Connection connection;
+
+        ResponseHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, SocketFrame response) {
+            PendingRequest<?> request = connection.pending.get(response.requestId());
+            // Absente si la requête a déjà expiré
+            if (request != null && request.onFrame(response)) {
+                connection.pending.remove(response.requestId(), request);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            connection.failAll(new ClosedChannelException());
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            connection.failAll(cause);
+            ctx.close();
+        }
+    }
+}
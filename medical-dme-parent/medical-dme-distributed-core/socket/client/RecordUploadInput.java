@@ -0,0 +1,78 @@
+package com.medical.dme.distributed.socket.client;
+
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * Découpe un dossier en trames SEND_BEGIN, SEND_CHUNK* et SEND_END.
+ * Lu par le ChunkedWriteHandler au rythme où la connexion accepte les écritures :
+ * un seul morceau du corps est en mémoire à la fois.
+ */
+final class RecordUploadInput implements ChunkedInput<SocketFrame> {
+
+    private final ChunkedInput<ByteBuf> body;
+    private final int requestId;
+    private final int flags;
+    private final long totalLength;
+
+    private boolean beginSent;
+    private boolean endSent;
+
+    // totalLength : -1 si inconnue (flux)
+    RecordUploadInput(ChunkedInput<ByteBuf> body, int requestId, int flags, long totalLength) {
+        this.body = body;
+        this.requestId = requestId;
+        this.flags = flags;
+        this.totalLength = totalLength;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return endSent;
+    }
+
+    @Override
+    public void close() throws Exception {
+        body.close();
+    }
+
+    @Deprecated
+    @Override
+    public SocketFrame readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public SocketFrame readChunk(ByteBufAllocator allocator) throws Exception {
+        if (!beginSent) {
+            beginSent = true;
+            return new SocketFrame(SocketOpcode.SEND_BEGIN, flags, requestId, allocator.buffer(8).writeLong(totalLength));
+        }
+        if (!body.isEndOfInput()) {
+            ByteBuf chunk = body.readChunk(allocator);
+            if (chunk != null || !body.isEndOfInput()) {
+                return chunk != null ? new SocketFrame(SocketOpcode.SEND_CHUNK, flags, requestId, chunk) : null;
+            }
+        }
+        if (!endSent) {
+            endSent = true;
+            return new SocketFrame(SocketOpcode.SEND_END, flags, requestId, Unpooled.EMPTY_BUFFER);
+        }
+        return null;
+    }
+
+    @Override
+    public long length() {
+        return totalLength;
+    }
+
+    @Override
+    public long progress() {
+        return body.progress();
+    }
+}
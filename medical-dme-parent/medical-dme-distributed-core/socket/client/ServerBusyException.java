@@ -0,0 +1,11 @@
+package com.medical.dme.distributed.socket.client;
+
+import java.io.IOException;
+
+// Réponse BUSY : la requête n'a pas été exécutée et peut être renvoyée plus tard
+public class ServerBusyException extends IOException {
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
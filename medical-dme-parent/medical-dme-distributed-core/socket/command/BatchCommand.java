@@ -0,0 +1,173 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Base des commandes de lot : les éléments sont traités sur l'executor et la
+ * réponse de chacun envoyée dès qu'elle est prête ; BATCH_END suit la dernière.
+ * Un lot de lecture a au plus MAX_PARALLEL_ITEMS éléments en cours, c'est-à-dire
+ * traités ou dont la réponse n'a pas encore quitté le tampon de sortie : l'élément
+ * suivant ne démarre qu'une fois une réponse écrite, si bien qu'un client lent
+ * suspend le lot au lieu d'accumuler ses réponses en mémoire. Au-delà du premier,
+ * chaque élément en cours prend un permis de flow control comme une requête ;
+ * sans permis disponible, le lot continue un élément à la fois.
+ * Si l'executor refuse un élément, celui-ci reçoit une erreur.
+ * Les éléments d'un lot d'écriture ({@link #isWrite()}) sont traités sur place,
+ * dans l'ordre du lot, par la file d'écriture de la connexion : un seul thread,
+ * et des réponses de quelques dizaines d'octets.
+ */
+abstract class BatchCommand<T> implements SocketCommandHandler {
+
+    static final int MAX_PARALLEL_ITEMS = 32;
+
+    private final Executor executor;
+
+    BatchCommand(Executor executor) {
+        this.executor = executor;
+    }
+
+    // Éléments extraits de la requête, utilisables après sa libération
+    abstract List<T> items(SocketFrame request);
+
+    abstract SocketResponse processItem(int requestId, int flags, int index, T item)
+            throws Exception;
+
+    // Libère les ressources retenues par un élément
+    void releaseItem(T item) {
+    }
+
+    @Override
+    public void handle(SocketFrame request, SocketResponder responder) {
+        List<T> items = items(request);
+        int requestId = request.requestId();
+
+        if (items.isEmpty()) {
+            responder.complete(SocketFrame.batchEnd(requestId, 0));
+            return;
+        }
+
+        Batch batch = new Batch(items, requestId, request.flags(), responder);
+        if (isWrite()) {
+            batch.runInOrder();
+        } else {
+            batch.advance();
+        }
+    }
+
+    private final class Batch {
+
+        private final List<T> items;
+        private final int requestId;
+        private final int flags;
+        private final SocketResponder responder;
+
+        // Gardés par this
+        private int next;
+        private int inFlight;
+        private int extraPermits;
+        private boolean aborted;
+
+        Batch(List<T> items, int requestId, int flags, SocketResponder responder) {
+            this.items = items;
+            this.requestId = requestId;
+            this.flags = flags;
+            this.responder = responder;
+        }
+
+        void runInOrder() {
+            for (int index = 0; index < items.size(); index++) {
+                synchronized (this) {
+                    if (aborted) {
+                        releaseFrom(index);
+                        break;
+                    }
+                }
+                responder.send(process(index), this::acknowledged);
+            }
+            responder.complete(SocketFrame.batchEnd(requestId, items.size()));
+        }
+
+        // Démarre les éléments suivants tant que la fenêtre et les permis le permettent
+        void advance() {
+            List<Integer> started = new ArrayList<>();
+            synchronized (this) {
+                while (!aborted && next < items.size() && inFlight < MAX_PARALLEL_ITEMS) {
+                    // Le premier élément en cours utilise le permis de la requête
+                    if (inFlight > 0) {
+                        if (!responder.tryAcquirePermit()) {
+                            break;
+                        }
+                        extraPermits++;
+                    }
+                    inFlight++;
+                    started.add(next++);
+                }
+            }
+
+            for (int index : started) {
+                try {
+                    executor.execute(() -> responder.send(process(index), this::written));
+                } catch (RejectedExecutionException e) {
+                    // Appel possible depuis la boucle : refuser l'élément plutôt que le traiter ici
+                    releaseItem(items.get(index));
+                    responder.send(SocketFrame.batchItemError(requestId, index, "Command queue full"), this::written);
+                }
+            }
+        }
+
+        private SocketResponse process(int index) {
+            T item = items.get(index);
+            try {
+                return processItem(requestId, flags, index, item);
+            } catch (Exception e) {
+                return SocketFrame.batchItemError(requestId, index, e.getMessage());
+            } finally {
+                releaseItem(item);
+            }
+        }
+
+        private synchronized void acknowledged(boolean success) {
+            if (!success) {
+                aborted = true;
+            }
+        }
+
+        // Appelé sur la boucle de la connexion quand une réponse d'élément a été écrite (ou perdue)
+        private void written(boolean success) {
+            boolean done;
+            synchronized (this) {
+                inFlight--;
+                if (extraPermits > 0) {
+                    extraPermits--;
+                    responder.releasePermit();
+                }
+                if (!success && !aborted) {
+                    // Connexion perdue : les éléments pas encore démarrés sont abandonnés
+                    aborted = true;
+                    releaseFrom(next);
+                    next = items.size();
+                }
+                done = inFlight == 0 && next == items.size();
+            }
+
+            if (done) {
+                // Les réponses des éléments sont toutes écrites avant la fin de lot
+                responder.complete(SocketFrame.batchEnd(requestId, items.size()));
+            } else {
+                advance();
+            }
+        }
+
+        private void releaseFrom(int index) {
+            for (int i = index; i < items.size(); i++) {
+                releaseItem(items.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.xml.MedicalRecordXMLProcessor;
+import com.medical.dme.distributed.socket.protocol.SocketFileFrame;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import com.medical.dme.distributed.socket.protocol.SocketResponse;
+import com.medical.dme.distributed.storage.RecordRegion;
+import com.medical.dme.distributed.storage.SegmentRecordStore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Payload de la requête : patientId en UTF-8.
+ * Un dossier déjà stocké dans le format demandé est renvoyé tel quel ; au-delà
+ * du seuil, il est transféré du fichier du segment vers la socket sans passer
+ * par l'espace utilisateur.
+ */
+public class GetRecordCommand implements SocketCommandHandler {
+
+    private final SegmentRecordStore recordStore;
+    private final int fileRegionThreshold;
+
+    public GetRecordCommand(SegmentRecordStore recordStore, int fileRegionThreshold) {
+        this.recordStore = recordStore;
+        this.fileRegionThreshold = fileRegionThreshold;
+    }
+
+    @Override
+    public SocketOpcode opcode() {
+        return SocketOpcode.GET_RECORD;
+    }
+
+    @Override
+    public void handle(SocketFrame request, SocketResponder responder) throws Exception {
+        String patientId = request.payloadAsString();
+        boolean binaryWanted = request.hasFlag(SocketProtocol.FLAG_BINARY_CODEC);
+        int responseFlags = request.flags() & SocketProtocol.FLAG_BINARY_CODEC;
+
+        // Une seule lecture dans le segment mappé
+        ByteBuffer stored = recordStore.get(patientId);
+        if (stored == null) {
+            responder.complete(SocketFrame.error(request.requestId(), "Record not found"));
+            return;
+        }
+
+        if (MedicalRecordBinaryCodec.isBinaryRecord(stored) == binaryWanted
+                && stored.remaining() >= fileRegionThreshold) {
+            SocketResponse raw = rawResponse(request.requestId(), responseFlags, patientId, binaryWanted);
+            if (raw != null) {
+                responder.complete(raw);
+                return;
+            }
+        }
+
+        responder.complete(new SocketFrame(SocketOpcode.RECORD, responseFlags, request.requestId(),
+                toPayload(stored, binaryWanted)));
+    }
+
+    // Dossier dans le format demandé, ou null s'il n'existe pas
+    public ByteBuf readRecord(String patientId, boolean binaryWanted) throws Exception {
+        ByteBuffer stored = recordStore.get(patientId);
+        return stored != null ? toPayload(stored, binaryWanted) : null;
+    }
+
+    private static ByteBuf toPayload(ByteBuffer stored, boolean binaryWanted) throws Exception {
+        boolean binaryStored = MedicalRecordBinaryCodec.isBinaryRecord(stored);
+        if (binaryStored == binaryWanted) {
+            // Même format : la vue sur le segment est envoyée sans copie
+            return Unpooled.wrappedBuffer(stored);
+        }
+        if (binaryStored) {
+            MedicalRecord record = MedicalRecordBinaryCodec.shared().decode(stored);
+            return Unpooled.wrappedBuffer(MedicalRecordXMLProcessor.shared().marshalToBytes(record));
+        }
+        byte[] xml = new byte[stored.remaining()];
+        stored.get(xml);
+        MedicalRecord record = MedicalRecordXMLProcessor.shared().unmarshalFromXML(new ByteArrayInputStream(xml));
+        return Unpooled.wrappedBuffer(MedicalRecordBinaryCodec.shared().encode(record));
+    }
+
+    // null si le dossier a été supprimé ou réécrit dans un autre format entre-temps
+    private SocketResponse rawResponse(int requestId, int flags, String patientId, boolean binaryWanted)
+            throws Exception {
+        RecordRegion region = recordStore.openRegion(patientId);
+        if (region == null) {
+            return null;
+        }
+        if (MedicalRecordBinaryCodec.isBinaryRecord(region.value()) != binaryWanted) {
+            region.close();
+            return null;
+        }
+        return new SocketFileFrame(SocketOpcode.RECORD, flags, requestId,
+                region.channel(), region.position(), region.length());
+    }
+}
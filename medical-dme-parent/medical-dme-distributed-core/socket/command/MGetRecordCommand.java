@@ -0,0 +1,44 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.distributed.socket.protocol.BatchPayload;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import com.medical.dme.distributed.socket.protocol.SocketResponse;
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Payload de la requête : lot de patientId ; réponse RECORD ou ERROR par élément
+public class MGetRecordCommand extends BatchCommand<String> {
+
+    private final GetRecordCommand getRecord;
+
+    public MGetRecordCommand(GetRecordCommand getRecord, Executor executor) {
+        super(executor);
+        this.getRecord = getRecord;
+    }
+
+    @Override
+    public SocketOpcode opcode() {
+        return SocketOpcode.MGET_RECORD;
+    }
+
+    @Override
+    List<String> items(SocketFrame request) {
+        return BatchPayload.decodeStrings(request.content());
+    }
+
+    @Override
+    SocketResponse processItem(int requestId, int flags, int index, String patientId)
+            throws Exception {
+        boolean binary = (flags & SocketProtocol.FLAG_BINARY_CODEC) != 0;
+        ByteBuf record = getRecord.readRecord(patientId, binary);
+        if (record == null) {
+            return SocketFrame.batchItemError(requestId, index, "Record not found");
+        }
+        return SocketFrame.batchItem(SocketOpcode.RECORD, flags & SocketProtocol.FLAG_BINARY_CODEC,
+                requestId, index, record);
+    }
+}
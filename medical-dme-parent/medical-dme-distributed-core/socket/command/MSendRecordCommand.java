@@ -0,0 +1,57 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.distributed.socket.protocol.BatchPayload;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import com.medical.dme.distributed.socket.protocol.SocketResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Payload de la requête : lot de dossiers (XML, ou codec avec FLAG_BINARY_CODEC) ; SUCCESS ou ERROR par élément
+public class MSendRecordCommand extends BatchCommand<ByteBuf> {
+
+    private final SendRecordCommand sendRecord;
+
+    public MSendRecordCommand(SendRecordCommand sendRecord, Executor executor) {
+        super(executor);
+        this.sendRecord = sendRecord;
+    }
+
+    @Override
+    public SocketOpcode opcode() {
+        return SocketOpcode.MSEND_RECORD;
+    }
+
+    @Override
+    public boolean isWrite() {
+        return true;
+    }
+
+    @Override
+    List<ByteBuf> items(SocketFrame request) {
+        List<ByteBuf> items = BatchPayload.decode(request.content());
+        // Chaque élément survit à la trame jusqu'à son traitement
+        for (ByteBuf item : items) {
+            item.retain();
+        }
+        return items;
+    }
+
+    @Override
+    SocketResponse processItem(int requestId, int flags, int index, ByteBuf record)
+            throws Exception {
+        String patientId = sendRecord.store(record, (flags & SocketProtocol.FLAG_BINARY_CODEC) != 0);
+        return SocketFrame.batchItem(SocketOpcode.SUCCESS, 0, requestId, index,
+                Unpooled.copiedBuffer("Record stored for patient " + patientId, CharsetUtil.UTF_8));
+    }
+
+    @Override
+    void releaseItem(ByteBuf record) {
+        record.release();
+    }
+}
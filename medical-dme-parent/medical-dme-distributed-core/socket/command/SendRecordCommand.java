@@ -0,0 +1,85 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.common.xml.MedicalRecordXMLProcessor;
+import com.medical.dme.distributed.socket.RecordStoreFormat;
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+import com.medical.dme.distributed.socket.protocol.SocketProtocol;
+import com.medical.dme.distributed.storage.SegmentRecordStore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Payload de la requête : dossier en XML, ou au format du codec avec FLAG_BINARY_CODEC
+public class SendRecordCommand implements SocketCommandHandler {
+
+    private final SegmentRecordStore recordStore;
+    private final RecordStoreFormat storeFormat;
+
+    public SendRecordCommand(SegmentRecordStore recordStore, RecordStoreFormat storeFormat) {
+        this.recordStore = recordStore;
+        this.storeFormat = storeFormat;
+    }
+
+    @Override
+    public SocketOpcode opcode() {
+        return SocketOpcode.SEND_RECORD;
+    }
+
+    @Override
+    public boolean isWrite() {
+        return true;
+    }
+
+    @Override
+    public void handle(SocketFrame request, SocketResponder responder) throws Exception {
+        String patientId = store(request.content(), request.hasFlag(SocketProtocol.FLAG_BINARY_CODEC));
+        responder.complete(SocketFrame.success(request.requestId(), "Record stored for patient " + patientId));
+    }
+
+    // Valide puis sauvegarde le dossier reçu ; renvoie son patientId
+    public String store(ByteBuf payload, boolean binary) throws Exception {
+        MedicalRecord record = binary
+                ? MedicalRecordBinaryCodec.shared().decode(payload.nioBuffer())
+                : MedicalRecordXMLProcessor.shared().unmarshalFromXML(new ByteBufInputStream(payload.duplicate()));
+
+        String patientId = record.getPatient().getPatientId();
+
+        // Le contenu reçu est déjà dans le format du store : pas de ré-encodage
+        boolean sameFormat = binary == (storeFormat == RecordStoreFormat.BINARY);
+        byte[] stored = sameFormat ? ByteBufUtil.getBytes(payload) : storeFormat.encode(record);
+        recordStore.put(patientId, stored);
+        return patientId;
+    }
+
+    // Variante pour un upload par morceaux : le dossier est lu en flux depuis le fichier temporaire
+    public String store(Path file, boolean binary) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Record too large: " + size + " bytes");
+            }
+
+            MedicalRecord record = binary
+                    ? MedicalRecordBinaryCodec.shared().decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size))
+                    : MedicalRecordXMLProcessor.shared().unmarshalFromXML(file.toString());
+
+            String patientId = record.getPatient().getPatientId();
+
+            boolean sameFormat = binary == (storeFormat == RecordStoreFormat.BINARY);
+            if (sameFormat) {
+                recordStore.put(patientId, channel, (int) size);
+            } else {
+                recordStore.put(patientId, storeFormat.encode(record));
+            }
+            return patientId;
+        }
+    }
+}
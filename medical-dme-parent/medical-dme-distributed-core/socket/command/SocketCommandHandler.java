@@ -0,0 +1,22 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.distributed.socket.protocol.SocketFrame;
+import com.medical.dme.distributed.socket.protocol.SocketOpcode;
+
+/**
+ * Traitement d'un opcode du protocole socket. La trame de requête est libérée
+ * par l'appelant au retour de handle : un traitement qui se poursuit sur
+ * d'autres threads doit retenir ce dont il a besoin. Chaque réponse porte le
+ * requestId de la requête, et responder.complete doit être appelé une fois.
+ */
+public interface SocketCommandHandler {
+
+    SocketOpcode opcode();
+
+    // Les écritures d'une connexion sont exécutées une à une, dans l'ordre de réception
+    default boolean isWrite() {
+        return false;
+    }
+
+    void handle(SocketFrame request, SocketResponder responder) throws Exception;
+}
@@ -0,0 +1,21 @@
+package com.medical.dme.distributed.socket.command;
+
+import com.medical.dme.distributed.socket.protocol.SocketResponse;
+
+import java.util.function.Consumer;
+
+// Canal de réponse d'une requête ; utilisable depuis n'importe quel thread
+public interface SocketResponder {
+
+    // Réponse intermédiaire (élément d'un lot) ; onWritten reçoit le succès de l'écriture,
+    // sur la boucle de la connexion
+    void send(SocketResponse response, Consumer<Boolean> onWritten);
+
+    // Réponse finale : la requête est alors terminée, un seul appel
+    void complete(SocketResponse response);
+
+    // Permis de flow control supplémentaire, pour un élément de lot traité en parallèle
+    boolean tryAcquirePermit();
+
+    void releasePermit();
+}
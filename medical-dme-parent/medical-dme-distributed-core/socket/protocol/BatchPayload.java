@@ -0,0 +1,77 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Payload d'une requête de lot : [nombre int32] puis, pour chaque élément,
+ * [taille int32][contenu].
+ */
+public final class BatchPayload {
+
+    public static final int MAX_ITEMS = 10_000;
+
+    private BatchPayload() {
+    }
+
+    public static ByteBuf encode(Collection<byte[]> items) {
+        int size = 4;
+        for (byte[] item : items) {
+            size += 4 + item.length;
+        }
+        ByteBuf payload = Unpooled.buffer(size);
+        payload.writeInt(items.size());
+        for (byte[] item : items) {
+            payload.writeInt(item.length);
+            payload.writeBytes(item);
+        }
+        return payload;
+    }
+
+    public static ByteBuf encodeStrings(Collection<String> items) {
+        List<byte[]> encoded = new ArrayList<>(items.size());
+        for (String item : items) {
+            encoded.add(item.getBytes(CharsetUtil.UTF_8));
+        }
+        return encode(encoded);
+    }
+
+    // Vues sur le payload, non retenues : les retenir pour les utiliser après sa libération
+    public static List<ByteBuf> decode(ByteBuf payload) {
+        ByteBuf in = payload.duplicate();
+        if (in.readableBytes() < 4) {
+            throw new IllegalArgumentException("Malformed batch payload: missing item count");
+        }
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ITEMS) {
+            throw new IllegalArgumentException("Batch size out of range: " + count + " (max " + MAX_ITEMS + ")");
+        }
+
+        List<ByteBuf> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.readableBytes() < 4) {
+                throw new IllegalArgumentException("Malformed batch payload: truncated at item " + i);
+            }
+            int length = in.readInt();
+            if (length < 0 || length > in.readableBytes()) {
+                throw new IllegalArgumentException("Malformed batch payload: bad length at item " + i);
+            }
+            items.add(in.readSlice(length));
+        }
+        return items;
+    }
+
+    public static List<String> decodeStrings(ByteBuf payload) {
+        List<ByteBuf> items = decode(payload);
+        List<String> strings = new ArrayList<>(items.size());
+        for (ByteBuf item : items) {
+            strings.add(item.toString(CharsetUtil.UTF_8));
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,86 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Trame dont le payload est une plage d'un fichier, envoyée par sendfile
+ * ({@link DefaultFileRegion}) ou, en TLS, par morceaux ({@link ChunkedNioFile}).
+ * Le canal de fichier est fermé à la fin du transfert, ou à la libération
+ * de la trame si elle n'est jamais écrite.
+ */
+public final class SocketFileFrame extends AbstractReferenceCounted implements SocketResponse {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final SocketOpcode opcode;
+    private final int flags;
+    private final int requestId;
+    private final FileChannel file;
+    private final long position;
+    private final int length;
+    private boolean transferred;
+
+    public SocketFileFrame(SocketOpcode opcode, int flags, int requestId, FileChannel file, long position, int length) {
+        this.opcode = opcode;
+        this.flags = flags;
+        this.requestId = requestId;
+        this.file = file;
+        this.position = position;
+        this.length = length;
+    }
+
+    public SocketOpcode opcode() {
+        return opcode;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    @Override
+    public int requestId() {
+        return requestId;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // Le canal de fichier passe alors sous la responsabilité de l'objet renvoyé
+    DefaultFileRegion toFileRegion() {
+        transferred = true;
+        return new DefaultFileRegion(file, position, length);
+    }
+
+    ChunkedNioFile toChunkedInput() throws IOException {
+        transferred = true;
+        return new ChunkedNioFile(file, position, length, CHUNK_SIZE);
+    }
+
+    @Override
+    public SocketFileFrame touch(Object hint) {
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        if (!transferred) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close record file: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SocketFileFrame[" + opcode + ", requestId=" + requestId + ", flags=0x" +
+                Integer.toHexString(flags) + ", payload=" + length + " bytes]";
+    }
+}
@@ -0,0 +1,31 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.ssl.SslHandler;
+
+import java.util.List;
+
+/**
+ * En-tête en mémoire suivi du contenu du fichier. Sans TLS, le noyau copie
+ * directement le fichier vers la socket ; avec TLS, le contenu doit être
+ * chiffré et passe par morceaux dans le ChunkedWriteHandler du pipeline.
+ */
+@ChannelHandler.Sharable
+public class SocketFileFrameEncoder extends MessageToMessageEncoder<SocketFileFrame> {
+
+    public static final SocketFileFrameEncoder INSTANCE = new SocketFileFrameEncoder();
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, SocketFileFrame frame, List<Object> out) throws Exception {
+        out.add(SocketFrameEncoder.encodeHeader(ctx.alloc(), SocketProtocol.VERSION, frame.opcode().code(),
+                frame.flags(), frame.requestId(), frame.length()));
+
+        if (ctx.pipeline().get(SslHandler.class) != null) {
+            out.add(frame.toChunkedInput());
+        } else {
+            out.add(frame.toFileRegion());
+        }
+    }
+}
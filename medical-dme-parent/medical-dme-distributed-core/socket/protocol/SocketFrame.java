@@ -0,0 +1,128 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Trame décodée. Le payload est compté par référence : la trame doit être
+ * libérée par le dernier handler qui la consomme.
+ */
+public final class SocketFrame extends DefaultByteBufHolder implements SocketResponse {
+
+    private final int version;
+    private final int opcodeCode;
+    private final int flags;
+    private final int requestId;
+
+    public SocketFrame(SocketOpcode opcode, int flags, int requestId, ByteBuf payload) {
+        this(SocketProtocol.VERSION, opcode.code(), flags, requestId, payload);
+    }
+
+    SocketFrame(int version, int opcodeCode, int flags, int requestId, ByteBuf payload) {
+        super(payload);
+        this.version = version;
+        this.opcodeCode = opcodeCode;
+        this.flags = flags;
+        this.requestId = requestId;
+    }
+
+    public static SocketFrame error(int requestId, String message) {
+        return new SocketFrame(SocketOpcode.ERROR, 0, requestId,
+                Unpooled.copiedBuffer(String.valueOf(message), CharsetUtil.UTF_8));
+    }
+
+    public static SocketFrame busy(int requestId, String message) {
+        return new SocketFrame(SocketOpcode.BUSY, 0, requestId, Unpooled.copiedBuffer(message, CharsetUtil.UTF_8));
+    }
+
+    public static SocketFrame success(int requestId, String message) {
+        return new SocketFrame(SocketOpcode.SUCCESS, 0, requestId,
+                Unpooled.copiedBuffer(message, CharsetUtil.UTF_8));
+    }
+
+    // Payload : [index int32][contenu], sans recopie du contenu
+    public static SocketFrame batchItem(SocketOpcode opcode, int flags, int requestId, int index, ByteBuf content) {
+        ByteBuf prefix = Unpooled.buffer(4).writeInt(index);
+        return new SocketFrame(opcode, flags | SocketProtocol.FLAG_BATCH_ITEM, requestId,
+                Unpooled.wrappedBuffer(prefix, content));
+    }
+
+    public static SocketFrame batchItemError(int requestId, int index, String message) {
+        return batchItem(SocketOpcode.ERROR, 0, requestId, index,
+                Unpooled.copiedBuffer(String.valueOf(message), CharsetUtil.UTF_8));
+    }
+
+    // Payload : nombre d'éléments du lot
+    public static SocketFrame batchEnd(int requestId, int itemCount) {
+        return new SocketFrame(SocketOpcode.BATCH_END, 0, requestId, Unpooled.buffer(4).writeInt(itemCount));
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int opcodeCode() {
+        return opcodeCode;
+    }
+
+    // null pour un opcode inconnu
+    public SocketOpcode opcode() {
+        return SocketOpcode.fromCode(opcodeCode);
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    @Override
+    public int requestId() {
+        return requestId;
+    }
+
+    public String payloadAsString() {
+        return content().toString(CharsetUtil.UTF_8);
+    }
+
+    @Override
+    public SocketFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public SocketFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public SocketFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public SocketFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    @Override
+    public SocketFrame replace(ByteBuf content) {
+        return new SocketFrame(version, opcodeCode, flags, requestId, content);
+    }
+
+    @Override
+    public String toString() {
+        SocketOpcode opcode = opcode();
+        return "SocketFrame[" + (opcode != null ? opcode : "0x" + Integer.toHexString(opcodeCode)) +
+                ", requestId=" + requestId + ", flags=0x" + Integer.toHexString(flags) +
+                ", payload=" + content().readableBytes() + " bytes]";
+    }
+}
@@ -0,0 +1,42 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+// Réassemble les trames découpées par TCP avant de lire l'en-tête
+public class SocketFrameDecoder extends LengthFieldBasedFrameDecoder {
+
+    public SocketFrameDecoder(int maxFrameLength) {
+        super(maxFrameLength, 0, SocketProtocol.LENGTH_FIELD_LENGTH, 0, SocketProtocol.LENGTH_FIELD_LENGTH);
+    }
+
+    // Octets reçus d'une trame pas encore complète (lecture indicative hors boucle)
+    public int bufferedBytes() {
+        return actualReadableBytes();
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+
+        try {
+            if (frame.readableBytes() < SocketProtocol.HEADER_LENGTH) {
+                throw new CorruptedFrameException("Frame shorter than header: " + frame.readableBytes() + " bytes");
+            }
+            int version = frame.readUnsignedByte();
+            int opcode = frame.readUnsignedByte();
+            int flags = frame.readUnsignedShort();
+            int requestId = frame.readInt();
+
+            // Le payload reste une vue sur le tampon reçu, sans copie
+            return new SocketFrame(version, opcode, flags, requestId, frame.retainedSlice());
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+// En-tête dans un petit tampon, payload transmis tel quel (pas de recopie)
+@ChannelHandler.Sharable
+public class SocketFrameEncoder extends MessageToMessageEncoder<SocketFrame> {
+
+    public static final SocketFrameEncoder INSTANCE = new SocketFrameEncoder();
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, SocketFrame frame, List<Object> out) {
+        ByteBuf payload = frame.content();
+
+        out.add(encodeHeader(ctx.alloc(), frame.version(), frame.opcodeCode(), frame.flags(),
+                frame.requestId(), payload.readableBytes()));
+        out.add(payload.retain());
+    }
+
+    static ByteBuf encodeHeader(ByteBufAllocator alloc, int version, int opcode, int flags,
+                                int requestId, int payloadLength) {
+        ByteBuf header = alloc.buffer(SocketProtocol.LENGTH_FIELD_LENGTH + SocketProtocol.HEADER_LENGTH);
+        header.writeInt(SocketProtocol.HEADER_LENGTH + payloadLength);
+        header.writeByte(version);
+        header.writeByte(opcode);
+        header.writeShort(flags);
+        header.writeInt(requestId);
+        return header;
+    }
+}
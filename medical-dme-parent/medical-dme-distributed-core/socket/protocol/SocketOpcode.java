@@ -0,0 +1,47 @@
+package com.medical.dme.distributed.socket.protocol;
+
+public enum SocketOpcode {
+
+    // Requêtes
+    GET_RECORD(0x01),
+    SEND_RECORD(0x02),
+    // Lots : une réponse FLAG_BATCH_ITEM par élément, dans l'ordre d'achèvement, puis BATCH_END
+    MGET_RECORD(0x03),
+    MSEND_RECORD(0x04),
+    // Upload par morceaux, même requestId : BEGIN [taille totale int64, -1 si inconnue],
+    // CHUNK* [octets du dossier], END [vide] ; une seule réponse, après END
+    SEND_BEGIN(0x05),
+    SEND_CHUNK(0x06),
+    SEND_END(0x07),
+
+    // Réponses
+    RECORD(0x81),
+    SUCCESS(0x82),
+    // Limite de requêtes en cours atteinte : la requête n'a pas été traitée, réessayer plus tard
+    BUSY(0x83),
+    BATCH_END(0x84),
+    ERROR(0xFF);
+
+    private static final SocketOpcode[] BY_CODE = new SocketOpcode[256];
+
+    static {
+        for (SocketOpcode opcode : values()) {
+            BY_CODE[opcode.code] = opcode;
+        }
+    }
+
+    private final int code;
+
+    SocketOpcode(int code) {
+        this.code = code;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    // null si le code n'est pas connu de cette version du serveur
+    public static SocketOpcode fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
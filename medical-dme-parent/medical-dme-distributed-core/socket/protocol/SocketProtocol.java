@@ -0,0 +1,27 @@
+package com.medical.dme.distributed.socket.protocol;
+
+/**
+ * Format d'une trame du protocole socket :
+ * <pre>
+ * [longueur int32][version int8][opcode int8][flags int16][requestId int32][payload]
+ * </pre>
+ * La longueur couvre tout ce qui suit le champ longueur (en-tête + payload).
+ */
+public final class SocketProtocol {
+
+    public static final int VERSION = 1;
+
+    public static final int LENGTH_FIELD_LENGTH = 4;
+    public static final int HEADER_LENGTH = 8;
+
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    // Payload au format du codec binaire au lieu du XML (requête comme réponse)
+    public static final int FLAG_BINARY_CODEC = 0x0001;
+
+    // Réponse à un élément de lot : le payload commence par l'index de l'élément (int32)
+    public static final int FLAG_BATCH_ITEM = 0x0002;
+
+    private SocketProtocol() {
+    }
+}
@@ -0,0 +1,12 @@
+package com.medical.dme.distributed.socket.protocol;
+
+import io.netty.util.ReferenceCounted;
+
+// Réponse écrite sur le canal : trame en mémoire ou trame adossée à un fichier
+public interface SocketResponse extends ReferenceCounted {
+
+    int requestId();
+
+    // null pour un opcode inconnu
+    SocketOpcode opcode();
+}
@@ -0,0 +1,6 @@
+package com.medical.dme.distributed.storage;
+
+// Position d'une entrée dans un segment du store
+public record RecordLocation(int segmentId, int entryOffset, int entryLength,
+                             int valueOffset, int valueLength) {
+}
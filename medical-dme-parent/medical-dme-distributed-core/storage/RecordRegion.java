@@ -0,0 +1,20 @@
+package com.medical.dme.distributed.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Valeur d'une entrée exposée pour un transfert direct depuis le fichier du segment.
+ * Le canal reste lisible même si le segment est supprimé par un compactage ;
+ * il appartient à l'appelant, qui doit le fermer. value est la vue mappée
+ * de la même entrée, pour inspecter le contenu sans lecture supplémentaire.
+ */
+public record RecordRegion(FileChannel channel, long position, int length, ByteBuffer value) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
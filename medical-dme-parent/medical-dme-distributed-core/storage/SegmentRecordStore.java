@@ -0,0 +1,534 @@
+package com.medical.dme.distributed.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stockage des dossiers dans des segments mappés en mémoire, en ajout seul.
+ * Chaque entrée a la forme [magic][crc32][taille clé][taille valeur][clé][valeur].
+ * Une taille de valeur à -1 marque une suppression. L'index en mémoire
+ * (patientId -> segment, position) est reconstruit au démarrage en relisant
+ * les segments. Une entrée dont l'en-tête est lisible mais le contenu corrompu
+ * est sautée ; seule la fin du dernier segment, où une écriture a pu être
+ * interrompue, est effacée. Un en-tête illisible dans un segment scellé fait
+ * échouer l'ouverture plutôt que de perdre les entrées qui le suivent.
+ */
+public class SegmentRecordStore implements Closeable {
+
+    private static final int ENTRY_MAGIC = 0x4D524543; // "MREC"
+    private static final int HEADER_SIZE = 16;
+    private static final int TOMBSTONE = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // Compacter un segment scellé dès que la moitié de son contenu est obsolète
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnWrite;
+
+    private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, RecordLocation> index = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Segment active;
+    private ScheduledExecutorService compactionScheduler;
+
+    private SegmentRecordStore(Path directory, int segmentSize, boolean syncOnWrite) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    // Taille de segment configurée en Mo : un segment est mappé d'un seul tenant, donc moins de 2 Go
+    public static int segmentSizeBytes(long megabytes) {
+        long bytes = megabytes * 1024 * 1024;
+        if (megabytes <= 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 and " +
+                    Integer.MAX_VALUE / (1024 * 1024) + " MB, got " + megabytes);
+        }
+        return (int) bytes;
+    }
+
+    public static SegmentRecordStore open(Path directory, int segmentSize, boolean syncOnWrite)
+            throws IOException {
+        Files.createDirectories(directory);
+
+        SegmentRecordStore store = new SegmentRecordStore(directory, segmentSize, syncOnWrite);
+        store.recover();
+        return store;
+    }
+
+    public ByteBuffer get(String key) {
+        lock.readLock().lock();
+        try {
+            RecordLocation location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            // Lecture directe dans le segment mappé, sans copie
+            return segments.get(location.segmentId()).slice(location.valueOffset(), location.valueLength());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ouvre le fichier du segment pour un envoi sans copie (sendfile)
+    public RecordRegion openRegion(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            RecordLocation location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            // Ouvert sous verrou : le compactage ne peut pas supprimer le segment entre-temps
+            Segment segment = segments.get(location.segmentId());
+            FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ);
+            return new RecordRegion(channel, location.valueOffset(), location.valueLength(),
+                    segment.slice(location.valueOffset(), location.valueLength()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public byte[] getBytes(String key) {
+        ByteBuffer value = get(key);
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        return bytes;
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    public void put(String key, byte[] value) throws IOException {
+        lock.writeLock().lock();
+        try {
+            RecordLocation location = append(key, ByteBuffer.wrap(value), value.length);
+            markDead(index.put(key, location));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Copie la valeur depuis un fichier (upload par morceaux) directement dans le segment mappé
+    public void put(String key, FileChannel source, int length) throws IOException {
+        lock.writeLock().lock();
+        try {
+            RecordLocation location = appendFrom(key, source, length);
+            markDead(index.put(key, location));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean delete(String key) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!index.containsKey(key)) {
+                return false;
+            }
+            RecordLocation tombstone = append(key, null, TOMBSTONE);
+            markDead(index.remove(key));
+            // La suppression elle-même ne porte aucune donnée vivante
+            segments.get(tombstone.segmentId()).deadBytes += tombstone.entryLength();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public List<String> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    // Réécrit les entrées vivantes des segments scellés trop fragmentés
+    public int compact() throws IOException {
+        int compacted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            lock.writeLock().lock();
+            try {
+                if (segment == active || !segments.containsKey(segment.id)
+                        || segment.deadRatio() < COMPACTION_THRESHOLD) {
+                    continue;
+                }
+                boolean hasOlderSegment = segments.lowerKey(segment.id) != null;
+                rewriteLiveEntries(segment, hasOlderSegment);
+
+                segments.remove(segment.id);
+                segment.close();
+                Files.deleteIfExists(segment.path);
+                compacted++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        if (compacted > 0) {
+            System.out.println("Record store compacted " + compacted + " segment(s), " +
+                    segments.size() + " remaining");
+        }
+        return compacted;
+    }
+
+    public void scheduleCompaction(long interval, TimeUnit unit) {
+        compactionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "record-store-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                System.err.println("Record store compaction failed: " + e.getMessage());
+            }
+        }, interval, interval, unit);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private RecordLocation append(String key, ByteBuffer value, int valueLength) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int entryLength = HEADER_SIZE + keyBytes.length + Math.max(valueLength, 0);
+
+        if (active == null || active.remaining() < entryLength) {
+            rollSegment(entryLength);
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer lengths = ByteBuffer.allocate(8).putInt(keyBytes.length).putInt(valueLength);
+        crc.update(lengths.array());
+        crc.update(keyBytes);
+        if (value != null) {
+            crc.update(value.duplicate());
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.writePosition;
+
+        // Le magic est écrit en dernier : une entrée partielle n'est jamais valide
+        buffer.position(offset + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(keyBytes.length);
+        buffer.putInt(valueLength);
+        buffer.put(keyBytes);
+        if (value != null) {
+            buffer.put(value.duplicate());
+        }
+        buffer.putInt(offset, ENTRY_MAGIC);
+
+        if (syncOnWrite) {
+            buffer.force();
+        }
+
+        active.writePosition += entryLength;
+        return new RecordLocation(active.id, offset, entryLength,
+                offset + HEADER_SIZE + keyBytes.length, Math.max(valueLength, 0));
+    }
+
+    private RecordLocation appendFrom(String key, FileChannel source, int valueLength) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int entryLength = HEADER_SIZE + keyBytes.length + valueLength;
+
+        if (active == null || active.remaining() < entryLength) {
+            rollSegment(entryLength);
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.writePosition;
+        int valueOffset = offset + HEADER_SIZE + keyBytes.length;
+
+        // La valeur est lue du fichier vers le segment, sans tableau intermédiaire
+        ByteBuffer target = buffer.duplicate();
+        target.limit(valueOffset + valueLength).position(valueOffset);
+        long position = 0;
+        while (target.hasRemaining()) {
+            int read = source.read(target, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of source after " + position + " of " + valueLength + " bytes");
+            }
+            position += read;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer lengths = ByteBuffer.allocate(8).putInt(keyBytes.length).putInt(valueLength);
+        crc.update(lengths.array());
+        crc.update(keyBytes);
+        target.flip().position(valueOffset);
+        crc.update(target);
+
+        buffer.position(offset + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(keyBytes.length);
+        buffer.putInt(valueLength);
+        buffer.put(keyBytes);
+        buffer.putInt(offset, ENTRY_MAGIC);
+
+        if (syncOnWrite) {
+            buffer.force();
+        }
+
+        active.writePosition += entryLength;
+        return new RecordLocation(active.id, offset, entryLength, valueOffset, valueLength);
+    }
+
+    private void rewriteLiveEntries(Segment segment, boolean keepTombstones) throws IOException {
+        int position = 0;
+        while (position + HEADER_SIZE <= segment.writePosition) {
+            Entry entry = readEntry(segment, position);
+            if (entry == null) {
+                int length = entryLength(segment, position);
+                if (length < 0) {
+                    // Le segment n'est pas supprimé : ses entrées suivantes restent lisibles
+                    throw new IOException("Unreadable entry in " + segment.path + " at offset " +
+                            position + ", compaction aborted");
+                }
+                position += length;
+                continue;
+            }
+
+            if (entry.tombstone()) {
+                // Une suppression doit survivre tant qu'un segment plus ancien peut contenir la clé
+                if (keepTombstones && !index.containsKey(entry.key())) {
+                    RecordLocation tombstone = append(entry.key(), null, TOMBSTONE);
+                    segments.get(tombstone.segmentId()).deadBytes += tombstone.entryLength();
+                }
+            } else {
+                RecordLocation current = index.get(entry.key());
+                if (current != null && current.segmentId() == segment.id && current.entryOffset() == position) {
+                    ByteBuffer value = segment.slice(entry.location().valueOffset(), entry.location().valueLength());
+                    index.put(entry.key(), append(entry.key(), value, value.remaining()));
+                }
+            }
+            position += entry.location().entryLength();
+        }
+
+        if (!syncOnWrite && active != null) {
+            active.buffer.force();
+        }
+    }
+
+    private void rollSegment(int minimumSize) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+        }
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+
+        active = Segment.open(id, path, Math.max(segmentSize, minimumSize));
+        segments.put(id, active);
+    }
+
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(null);
+
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            String name = path.getFileName().toString();
+            int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+
+            Segment segment = Segment.open(id, path, (int) Files.size(path));
+            segments.put(id, segment);
+            replay(segment, i == paths.size() - 1);
+            active = segment;
+        }
+
+        System.out.println("Record store recovered " + index.size() + " records from " +
+                segments.size() + " segment(s) in " + directory);
+    }
+
+    // last : segment actif, le seul où une écriture a pu être interrompue
+    private void replay(Segment segment, boolean last) throws IOException {
+        int position = 0;
+        int skipped = 0;
+        // Les segments sont pré-remplis de zéros : un magic nul marque la fin des entrées
+        while (position + HEADER_SIZE <= segment.capacity() && segment.buffer.getInt(position) != 0) {
+            Entry entry = readEntry(segment, position);
+            if (entry == null) {
+                int length = entryLength(segment, position);
+                if (length > 0) {
+                    // Contenu corrompu sous un en-tête lisible : seule cette entrée est perdue
+                    segment.deadBytes += length;
+                    position += length;
+                    skipped++;
+                    continue;
+                }
+                if (!last) {
+                    throw new IOException("Unreadable entry header in sealed segment " + segment.path +
+                            " at offset " + position);
+                }
+                // Écriture interrompue en fin du segment actif : effacée
+                for (int i = position; i < segment.capacity(); i++) {
+                    segment.buffer.put(i, (byte) 0);
+                }
+                segment.buffer.force();
+                break;
+            }
+
+            if (entry.tombstone()) {
+                markDead(index.remove(entry.key()));
+                segment.deadBytes += entry.location().entryLength();
+            } else {
+                markDead(index.put(entry.key(), entry.location()));
+            }
+            position += entry.location().entryLength();
+        }
+        segment.writePosition = position;
+
+        if (skipped > 0) {
+            System.err.println("Record store skipped " + skipped + " corrupt entr" + (skipped > 1 ? "ies" : "y") +
+                    " in " + segment.path);
+        }
+    }
+
+    // Taille de l'entrée d'après son en-tête (magic, tailles, limites du segment), sans vérifier
+    // le CRC ; -1 si l'en-tête est inutilisable
+    private int entryLength(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer;
+        if (buffer.getInt(position) != ENTRY_MAGIC) {
+            return -1;
+        }
+
+        int keyLength = buffer.getInt(position + 8);
+        int valueLength = buffer.getInt(position + 12);
+        if (keyLength <= 0 || valueLength < TOMBSTONE) {
+            return -1;
+        }
+
+        long entryLength = (long) HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+        return position + entryLength > segment.capacity() ? -1 : (int) entryLength;
+    }
+
+    private Entry readEntry(Segment segment, int position) {
+        int entryLength = entryLength(segment, position);
+        if (entryLength < 0) {
+            return null;
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int storedCrc = buffer.getInt(position + 4);
+        int keyLength = buffer.getInt(position + 8);
+        int valueLength = buffer.getInt(position + 12);
+
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(position + 8, entryLength - 8));
+        if ((int) crc.getValue() != storedCrc) {
+            return null;
+        }
+
+        byte[] keyBytes = new byte[keyLength];
+        segment.slice(position + HEADER_SIZE, keyLength).get(keyBytes);
+
+        RecordLocation location = new RecordLocation(segment.id, position, entryLength,
+                position + HEADER_SIZE + keyLength, Math.max(valueLength, 0));
+        return new Entry(new String(keyBytes, StandardCharsets.UTF_8), location, valueLength == TOMBSTONE);
+    }
+
+    private void markDead(RecordLocation previous) {
+        if (previous != null) {
+            Segment segment = segments.get(previous.segmentId());
+            if (segment != null) {
+                segment.deadBytes += previous.entryLength();
+            }
+        }
+    }
+
+    private record Entry(String key, RecordLocation location, boolean tombstone) {
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        long deadBytes;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(int id, Path path, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Le fichier est pré-alloué à la taille du segment (rempli de zéros)
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(id, path, channel, buffer);
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        int remaining() {
+            return capacity() - writePosition;
+        }
+
+        double deadRatio() {
+            return writePosition == 0 ? 0 : (double) deadBytes / writePosition;
+        }
+
+        ByteBuffer slice(int offset, int length) {
+            return buffer.slice(offset, length).asReadOnlyBuffer();
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+}
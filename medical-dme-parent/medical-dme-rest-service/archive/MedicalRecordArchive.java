@@ -0,0 +1,552 @@
+package com.medical.dme.rest.archive;
+
+import com.medical.dme.common.codec.BinaryReader;
+import com.medical.dme.common.codec.BinaryWriter;
+import com.medical.dme.common.codec.ByteBufferPool;
+import com.medical.dme.common.codec.MedicalRecordBinaryCodec;
+import com.medical.dme.common.model.MedicalRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Archive des dossiers supprimés, compressée par blocs (Deflater).
+ *
+ * Fichier : [en-tête] ([bloc] [fragment d'index])*. Chaque bloc regroupe plusieurs
+ * dossiers compressés ensemble ; son fragment d'index, écrit juste après, associe
+ * recordId et patientId à ce bloc, pour restaurer un dossier en ne décompressant
+ * qu'un bloc. Sceller un bloc n'écrit que ce bloc et son fragment : le coût d'écriture
+ * ne dépend pas de la taille de l'archive. À l'ouverture, les en-têtes de blocs sont
+ * chaînés (chacun donne la longueur du bloc et du fragment, sous son propre CRC) et
+ * seuls les fragments sont lus. Seul un dernier bloc incomplet (arrêt pendant le
+ * scellement) est tronqué : un bloc corrompu au milieu du fichier est sauté, et ses
+ * dossiers seuls sont perdus.
+ * Les dossiers pas encore scellés dans un bloc sont écrits dans un journal
+ * (fichier .pending) afin de ne rien perdre en cas d'arrêt brutal.
+ */
+@Component
+public class MedicalRecordArchive {
+
+    private static final int FILE_MAGIC = 0x444D4541;   // "DMEA"
+    private static final int FORMAT_VERSION = 3;
+    private static final int BLOCK_MAGIC = 0x424C4B32;  // "BLK2"
+    private static final int FILE_HEADER_SIZE = 8;
+    // magic, nombre de dossiers, taille décompressée, taille compressée, CRC du bloc,
+    // taille du fragment d'index, CRC du fragment, CRC des sept champs précédents
+    private static final int BLOCK_HEADER_SIZE = 32;
+
+    @Value("${medical.archive.path:archive/medical-records.dmea}")
+    private String archivePath;
+
+    @Value("${medical.archive.block-size-kb:256}")
+    private int blockSizeKb;
+
+    @Value("${medical.archive.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${medical.archive.sync-on-append:true}")
+    private boolean syncOnAppend;
+
+    private final MedicalRecordBinaryCodec codec = MedicalRecordBinaryCodec.shared();
+    private final ByteBufferPool bufferPool = new ByteBufferPool(64 * 1024, 4);
+
+    private final Map<String, ArchiveEntry> entriesByRecordId = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> recordIdsByPatientId = new ConcurrentHashMap<>();
+
+    // Dossiers du bloc en cours, pas encore compressés
+    private final List<PendingRecord> pending = new ArrayList<>();
+    private long pendingBytes;
+
+    private FileChannel archive;
+    private FileChannel journal;
+    private Deflater deflater;
+    private long dataEnd;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path path = Paths.get(archivePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        archive = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = FileChannel.open(Paths.get(archivePath + ".pending"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        deflater = new Deflater(compressionLevel);
+
+        if (archive.size() < FILE_HEADER_SIZE) {
+            // Nouvelle archive, ou arrêt avant la fin de l'en-tête
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FORMAT_VERSION);
+            archive.truncate(0);
+            writeFully(header.flip(), 0);
+            archive.force(true);
+            dataEnd = FILE_HEADER_SIZE;
+        } else {
+            checkFileHeader();
+            loadIndex();
+        }
+        replayJournal();
+
+        System.out.println("Medical record archive opened: " + entriesByRecordId.size() +
+                " archived records in " + path);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (archive == null) {
+            return;
+        }
+        sealBlock();
+        archive.close();
+        journal.close();
+        deflater.end();
+        archive = null;
+    }
+
+    public synchronized void archive(String recordId, String patientId, MedicalRecord record) throws IOException {
+        PendingRecord entry = new PendingRecord(recordId, patientId, System.currentTimeMillis(),
+                codec.encode(record));
+
+        // Journal d'abord : le dossier est durable avant la suppression en base
+        byte[] journalEntry = encodeEntry(entry);
+        CRC32 crc = new CRC32();
+        crc.update(journalEntry);
+        ByteBuffer frame = ByteBuffer.allocate(8 + journalEntry.length)
+                .putInt(journalEntry.length).putInt((int) crc.getValue()).put(journalEntry);
+        frame.flip();
+        while (frame.hasRemaining()) {
+            journal.write(frame, journal.size());
+        }
+        if (syncOnAppend) {
+            journal.force(false);
+        }
+
+        addPending(entry);
+        if (pendingBytes >= blockSizeKb * 1024L) {
+            sealBlock();
+        }
+    }
+
+    public MedicalRecord restore(String recordId) throws IOException {
+        ArchiveEntry entry;
+        synchronized (this) {
+            entry = entriesByRecordId.get(recordId);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.blockOffset() < 0) {
+                for (PendingRecord record : pending) {
+                    if (record.recordId().equals(recordId)) {
+                        return codec.decode(record.data());
+                    }
+                }
+            }
+        }
+
+        // Un seul bloc est lu et décompressé
+        BinaryReader reader = new BinaryReader(ByteBuffer.wrap(readBlock(entry.blockOffset())));
+        while (reader.hasRemaining()) {
+            PendingRecord record = decodeEntry(reader);
+            if (record.recordId().equals(recordId)) {
+                return codec.decode(record.data());
+            }
+        }
+        throw new IOException("Archive index points to a block without record " + recordId);
+    }
+
+    public List<MedicalRecord> restoreByPatientId(String patientId) throws IOException {
+        List<MedicalRecord> records = new ArrayList<>();
+        for (String recordId : recordIdsByPatientId.getOrDefault(patientId, Collections.emptyList())) {
+            MedicalRecord record = restore(recordId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    public boolean contains(String recordId) {
+        return entriesByRecordId.containsKey(recordId);
+    }
+
+    public int size() {
+        return entriesByRecordId.size();
+    }
+
+    private void addPending(PendingRecord entry) {
+        pending.add(entry);
+        pendingBytes += entry.data().length;
+        index(new ArchiveEntry(entry.recordId(), entry.patientId(), -1, entry.archivedAt()));
+    }
+
+    private void index(ArchiveEntry entry) {
+        ArchiveEntry previous = entriesByRecordId.put(entry.recordId(), entry);
+        if (previous == null) {
+            recordIdsByPatientId.computeIfAbsent(entry.patientId(),
+                    id -> Collections.synchronizedList(new ArrayList<>())).add(entry.recordId());
+        }
+    }
+
+    private synchronized void sealBlock() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        BinaryWriter writer = new BinaryWriter(bufferPool);
+        byte[] uncompressed;
+        try {
+            for (PendingRecord record : pending) {
+                writeEntry(writer, record);
+            }
+            uncompressed = writer.toByteArray();
+        } finally {
+            writer.release();
+        }
+
+        byte[] compressed = deflate(uncompressed);
+        byte[] fragment = encodeIndexFragment(pending);
+
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + compressed.length + fragment.length)
+                .putInt(BLOCK_MAGIC)
+                .putInt(pending.size())
+                .putInt(uncompressed.length)
+                .putInt(compressed.length)
+                .putInt(crc(compressed))
+                .putInt(fragment.length)
+                .putInt(crc(fragment));
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(block.array(), 0, BLOCK_HEADER_SIZE - 4);
+        block.putInt((int) headerCrc.getValue())
+                .put(compressed)
+                .put(fragment);
+
+        // Ajout en fin de données ; un reste d'un scellement interrompu est écrasé
+        long blockOffset = dataEnd;
+        archive.truncate(blockOffset);
+        writeFully(block.flip(), blockOffset);
+        archive.force(true);
+        dataEnd = blockOffset + block.capacity();
+
+        for (PendingRecord record : pending) {
+            index(new ArchiveEntry(record.recordId(), record.patientId(), blockOffset, record.archivedAt()));
+        }
+
+        pending.clear();
+        pendingBytes = 0;
+        journal.truncate(0);
+        journal.force(true);
+    }
+
+    // Entrées du bloc, son offset est implicite : [nombre] ([recordId] [patientId] [archivedAt])*
+    private byte[] encodeIndexFragment(List<PendingRecord> records) {
+        BinaryWriter writer = new BinaryWriter(bufferPool);
+        try {
+            writer.writeVarInt(records.size());
+            for (PendingRecord record : records) {
+                writer.writeString(record.recordId());
+                writer.writeString(record.patientId());
+                writer.writeVarLong(record.archivedAt());
+            }
+            return writer.toByteArray();
+        } finally {
+            writer.release();
+        }
+    }
+
+    private void checkFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getInt();
+        if (magic != FILE_MAGIC) {
+            throw new IOException("Not a medical record archive: " + archivePath);
+        }
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported archive format version " + version + ": " + archivePath);
+        }
+    }
+
+    /**
+     * Parcourt la chaîne des blocs et indexe leurs fragments. Un fragment illisible
+     * est reconstruit en décompressant son bloc ; un bloc illisible au milieu du
+     * fichier est sauté, et un en-tête corrompu fait reprendre la chaîne au prochain
+     * en-tête valide. Seule la fin du fichier, après le dernier bloc complet, est tronquée.
+     */
+    private void loadIndex() throws IOException {
+        long position = FILE_HEADER_SIZE;
+        long size = archive.size();
+        int rebuiltBlocks = 0;
+        int lostBlocks = 0;
+
+        while (position + BLOCK_HEADER_SIZE <= size) {
+            BlockHeader header = readBlockHeader(position);
+            if (header == null) {
+                // Longueur inconnue : reprise au bloc suivant s'il y en a un, sinon fin interrompue
+                long next = findNextBlock(position + 1, size);
+                if (next < 0) {
+                    break;
+                }
+                System.err.println("Archive block header corrupted at offset " + position + ", " +
+                        (next - position) + " bytes skipped");
+                lostBlocks++;
+                position = next;
+                continue;
+            }
+            long blockEnd = header.end(position);
+            if (blockEnd > size) {
+                break;
+            }
+
+            ByteBuffer fragment = ByteBuffer.allocate(header.fragmentLength());
+            readFully(fragment, position + BLOCK_HEADER_SIZE + header.compressedLength());
+            if (crc(fragment.array()) == header.fragmentCrc()) {
+                BinaryReader reader = new BinaryReader(fragment.flip());
+                int entries = reader.readVarInt();
+                for (int i = 0; i < entries; i++) {
+                    index(new ArchiveEntry(reader.readString(), reader.readString(), position, reader.readVarLong()));
+                }
+            } else {
+                byte[] data;
+                try {
+                    data = readBlock(position);
+                } catch (IOException e) {
+                    if (blockEnd == size) {
+                        // Dernier bloc : scellement interrompu, ses dossiers sont encore dans le journal
+                        break;
+                    }
+                    System.err.println("Archive block at offset " + position + " skipped, its " +
+                            header.count() + " records are lost: " + e.getMessage());
+                    lostBlocks++;
+                    position = blockEnd;
+                    continue;
+                }
+                BinaryReader reader = new BinaryReader(ByteBuffer.wrap(data));
+                while (reader.hasRemaining()) {
+                    PendingRecord record = decodeEntry(reader);
+                    index(new ArchiveEntry(record.recordId(), record.patientId(), position, record.archivedAt()));
+                }
+                rebuiltBlocks++;
+            }
+            position = blockEnd;
+        }
+
+        if (rebuiltBlocks > 0) {
+            System.out.println("Archive index rebuilt from " + rebuiltBlocks + " block(s) with a corrupted index fragment");
+        }
+        if (lostBlocks > 0) {
+            System.err.println("Archive " + archivePath + ": " + lostBlocks + " corrupted block(s) skipped");
+        }
+        if (position < size) {
+            // Les dossiers d'un scellement interrompu sont encore dans le journal
+            System.out.println("Archive truncated at offset " + position + ": " + (size - position) +
+                    " bytes of incomplete or corrupted block discarded");
+            archive.truncate(position);
+            archive.force(true);
+        }
+        dataEnd = position;
+    }
+
+    private void replayJournal() throws IOException {
+        long position = 0;
+        long size = journal.size();
+        ByteBuffer frameHeader = ByteBuffer.allocate(8);
+
+        while (position + 8 <= size) {
+            frameHeader.clear();
+            journal.read(frameHeader, position);
+            frameHeader.flip();
+            int length = frameHeader.getInt();
+            int expectedCrc = frameHeader.getInt();
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining() && journal.read(payload, position + 8 + payload.position()) > 0) {
+                // lecture complète de l'entrée
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+
+            PendingRecord record = decodeEntry(new BinaryReader(ByteBuffer.wrap(payload.array())));
+            // Déjà scellé si l'arrêt a eu lieu entre l'écriture du bloc et la purge du journal
+            if (!entriesByRecordId.containsKey(record.recordId())) {
+                addPending(record);
+            }
+            position += 8 + length;
+        }
+    }
+
+    // En-tête du bloc à offset ; null si le magic, le CRC de l'en-tête ou une longueur est invalide
+    private BlockHeader readBlockHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        readFully(header, offset);
+        return parseBlockHeader(header.flip());
+    }
+
+    private static BlockHeader parseBlockHeader(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        crc.update(header.slice(header.position(), BLOCK_HEADER_SIZE - 4));
+        if (header.getInt() != BLOCK_MAGIC) {
+            return null;
+        }
+        BlockHeader block = new BlockHeader(header.getInt(), header.getInt(), header.getInt(),
+                header.getInt(), header.getInt(), header.getInt());
+        if (header.getInt() != (int) crc.getValue() || block.count() < 0 || block.uncompressedLength() < 0
+                || block.compressedLength() < 0 || block.fragmentLength() < 0) {
+            return null;
+        }
+        return block;
+    }
+
+    // Offset du prochain en-tête de bloc valide à partir de from ; -1 s'il n'y en a pas
+    private long findNextBlock(long from, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(64 * 1024);
+        for (long base = from; base + BLOCK_HEADER_SIZE <= size; base += window.capacity() - BLOCK_HEADER_SIZE + 1) {
+            window.clear();
+            window.limit((int) Math.min(window.capacity(), size - base));
+            readFully(window, base);
+            window.flip();
+            for (int i = 0; i + BLOCK_HEADER_SIZE <= window.limit(); i++) {
+                if (window.getInt(i) == BLOCK_MAGIC
+                        && parseBlockHeader(window.slice(i, BLOCK_HEADER_SIZE)) != null) {
+                    return base + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private byte[] readBlock(long offset) throws IOException {
+        BlockHeader header = readBlockHeader(offset);
+        if (header == null) {
+            throw new IOException("Invalid archive block at offset " + offset);
+        }
+        int uncompressedLength = header.uncompressedLength();
+
+        ByteBuffer compressed = ByteBuffer.allocate(header.compressedLength());
+        readFully(compressed, offset + BLOCK_HEADER_SIZE);
+        if (crc(compressed.array()) != header.blockCrc()) {
+            throw new IOException("Corrupted archive block at offset " + offset);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            byte[] data = new byte[uncompressedLength];
+            int inflated = 0;
+            while (inflated < uncompressedLength && !inflater.finished()) {
+                inflated += inflater.inflate(data, inflated, uncompressedLength - inflated);
+                if (inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (inflated != uncompressedLength) {
+                throw new IOException("Truncated archive block at offset " + offset);
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted archive block at offset " + offset, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private byte[] deflate(byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.max(64, data.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return java.util.Arrays.copyOf(buffer, length);
+    }
+
+    private static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private byte[] encodeEntry(PendingRecord record) {
+        BinaryWriter writer = new BinaryWriter(bufferPool);
+        try {
+            writeEntry(writer, record);
+            return writer.toByteArray();
+        } finally {
+            writer.release();
+        }
+    }
+
+    private static void writeEntry(BinaryWriter writer, PendingRecord record) {
+        writer.writeString(record.recordId());
+        writer.writeString(record.patientId());
+        writer.writeVarLong(record.archivedAt());
+        writer.writeBytes(record.data());
+    }
+
+    private static PendingRecord decodeEntry(BinaryReader reader) {
+        return new PendingRecord(reader.readString(), reader.readString(),
+                reader.readVarLong(), reader.readBytes());
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += archive.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = archive.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of archive at offset " + position);
+            }
+            position += read;
+        }
+    }
+
+    private record BlockHeader(int count, int uncompressedLength, int compressedLength, int blockCrc,
+                               int fragmentLength, int fragmentCrc) {
+
+        long end(long offset) {
+            return offset + BLOCK_HEADER_SIZE + (long) compressedLength + fragmentLength;
+        }
+    }
+
+    private record PendingRecord(String recordId, String patientId, long archivedAt, byte[] data) {
+    }
+
+    // blockOffset = -1 tant que le dossier n'est que dans le journal
+    private record ArchiveEntry(String recordId, String patientId, long blockOffset, long archivedAt) {
+    }
+}
@@ -1,5 +1,7 @@
 package com.medical.dme.rest.controller;
 
+import com.medical.dme.common.diff.MedicalRecordDelta;
+import com.medical.dme.common.diff.MedicalRecordDiff;
 import com.medical.dme.common.model.MedicalRecord;
 import org.springframework.web.bind.annotation.*;
 import java.util.*;
@@ -49,9 +51,16 @@ public class MedicalRecordController {
     @PutMapping("/{patientId}")
     public MedicalRecord updateRecord(@PathVariable String patientId,
                                       @RequestBody MedicalRecord record) {
-        if (!records.containsKey(patientId)) {
+        MedicalRecord existing = records.get(patientId);
+        if (existing == null) {
             throw new RuntimeException("Medical record not found for patient: " + patientId);
         }
+
+        // Aucune réécriture si le document reçu est identique à la version courante
+        MedicalRecordDelta delta = MedicalRecordDiff.diff(existing, record);
+        if (delta.isEmpty()) {
+            return existing;
+        }
         records.put(patientId, record);
         return record;
     }
@@ -1,5 +1,7 @@
 package com.medical.dme.rest.service.impl;
 
+import com.medical.dme.common.model.MedicalRecord;
+import com.medical.dme.rest.archive.MedicalRecordArchive;
 import com.medical.dme.rest.dto.*;
 import com.medical.dme.rest.entity.*;
 import com.medical.dme.rest.repository.MedicalRecordRepository;
@@ -12,6 +14,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -29,6 +32,9 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private MedicalRecordArchive medicalRecordArchive;
+
     @Override
     public Page<MedicalRecordDTO> getAllRecords(Pageable pageable) {
         return medicalRecordRepository.findAll(pageable)
@@ -175,8 +181,14 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
     }
 
     private void archiveRecord(MedicalRecordEntity record) {
-        // Archiver le dossier avant suppression
-        // Implémentation à compléter
+        // Archiver le dossier avant suppression ; en cas d'échec la suppression est annulée
+        MedicalRecord snapshot = modelMapper.map(record, MedicalRecord.class);
+        try {
+            medicalRecordArchive.archive(record.getRecordId(),
+                    record.getPatient().getPatientId(), snapshot);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to archive record: " + record.getRecordId(), e);
+        }
     }
 
     private void logUpdate(String recordId, String action) {
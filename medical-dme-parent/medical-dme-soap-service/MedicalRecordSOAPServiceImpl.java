@@ -1,5 +1,8 @@
 package com.medical.dme.soap.impl;
 
+import com.medical.dme.common.diff.MedicalRecordDelta;
+import com.medical.dme.common.diff.MedicalRecordDiff;
+import com.medical.dme.common.diff.RecordField;
 import com.medical.dme.common.model.*;
 import com.medical.dme.soap.IMedicalRecordSOAPService;
 import jakarta.jws.WebService;
@@ -56,14 +59,26 @@ public class MedicalRecordSOAPServiceImpl implements IMedicalRecordSOAPService {
     public boolean updateMedicalRecord(MedicalRecord medicalRecord) {
         String patientId = medicalRecord.getPatient().getPatientId();
 
-        if (!medicalRecords.containsKey(patientId)) {
+        MedicalRecord existing = medicalRecords.get(patientId);
+        if (existing == null) {
             throw new RuntimeException("Medical record not found for patient: " + patientId);
         }
 
+        // La date est réécrite à chaque mise à jour : elle seule ne compte pas comme un changement
+        MedicalRecordDelta delta = MedicalRecordDiff.diff(existing, medicalRecord);
+        long changes = delta.getChanges().stream()
+                .filter(change -> change.field() != RecordField.CREATION_DATE)
+                .count();
+        if (changes == 0) {
+            System.out.println("Medical record unchanged for patient: " + patientId);
+            return true;
+        }
+
         medicalRecord.setCreationDate(LocalDateTime.now());
         medicalRecords.put(patientId, medicalRecord);
 
-        System.out.println("Medical record updated for patient: " + patientId);
+        System.out.println("Medical record updated for patient: " + patientId +
+                " (" + changes + " changes)");
         return true;
     }
 